@@ -0,0 +1,106 @@
+package com.sdww8591.utils.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁的交接延迟：ping和pong两个线程轮流在锁内翻转turn，没轮到自己时只能释放锁再重新竞争，
+ * 因此一次操作至少包含对方拿到锁、翻转turn、释放锁这一次交接（包括唤醒被park的线程）。
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandoffBenchmark {
+
+    @Param
+    public LockType lockType;
+
+    private LockType.LockAdapter lock;
+
+    /**
+     * 0表示轮到ping，1表示轮到pong，只在锁内读写
+     */
+    private int turn;
+
+    /**
+     * 临界区是否翻转了turn，只由对应的线程在调用execute之前重置、之后读取
+     */
+    private boolean pingPassed;
+
+    private boolean pongPassed;
+
+    private final Runnable pingSection = new Runnable() {
+        @Override
+        public void run() {
+            if(turn == 0) {
+                turn = 1;
+                pingPassed = true;
+            }
+        }
+    };
+
+    private final Runnable pongSection = new Runnable() {
+        @Override
+        public void run() {
+            if(turn == 1) {
+                turn = 0;
+                pongPassed = true;
+            }
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lock = lockType.create();
+        turn = 0;
+    }
+
+    /**
+     * 对方已经停止测量时直接返回，避免迭代结束时一方永远等不到turn
+     */
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean ping(Control control) {
+        pingPassed = false;
+        while(!control.stopMeasurement) {
+            lock.execute(pingSection);
+            if(pingPassed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean pong(Control control) {
+        pongPassed = false;
+        while(!control.stopMeasurement) {
+            lock.execute(pongSection);
+            if(pongPassed) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
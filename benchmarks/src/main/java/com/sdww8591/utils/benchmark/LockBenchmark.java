@@ -0,0 +1,67 @@
+package com.sdww8591.utils.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有线程竞争同一个互斥锁，锁内递增计数器并消耗work个token的CPU。
+ * Throughput模式给出总吞吐量，SampleTime模式给出一次加锁、执行临界区、解锁的耗时分位数，
+ * 减去work=0时的结果即可估计临界区本身之外的等待时间。线程数由-t或LockBenchmarkRunner指定。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockBenchmark {
+
+    /**
+     * 不指定取值时JMH使用枚举的所有常量
+     */
+    @Param
+    public LockType lockType;
+
+    /**
+     * 临界区长度，Blackhole.consumeCPU的token数
+     */
+    @Param({"0", "20", "200"})
+    public int work;
+
+    private long counter;
+
+    private LockType.LockAdapter lock;
+
+    private Runnable criticalSection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        counter = 0;
+        lock = lockType.create();
+        criticalSection = new Runnable() {
+            @Override
+            public void run() {
+                counter++;
+                Blackhole.consumeCPU(work);
+            }
+        };
+    }
+
+    @Benchmark
+    public void acquireRelease() {
+        lock.execute(criticalSection);
+    }
+}
@@ -0,0 +1,51 @@
+package com.sdww8591.utils.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按线程数1、2、4……直到2倍核数依次运行基准测试，每个线程数的结果写入一个JSON文件：
+ * jmh-result-t{线程数}.json，其中包含每组参数的吞吐量以及SampleTime的分位数。
+ * <pre>
+ * java -cp target/benchmarks.jar com.sdww8591.utils.benchmark.LockBenchmarkRunner [include regex] [output dir]
+ * </pre>
+ * HandoffBenchmark固定使用两个线程，不参与线程数的遍历。
+ */
+public class LockBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "LockBenchmark";
+        String directory = args.length > 1 ? args[1] : ".";
+        for(int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .exclude(HandoffBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(directory + "/jmh-result-t" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+        Options handoff = new OptionsBuilder()
+                .include(HandoffBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(directory + "/jmh-result-handoff.json")
+                .build();
+        new Runner(handoff).run();
+    }
+
+    static List<Integer> threadCounts(int cores) {
+        List<Integer> counts = new ArrayList<>();
+        for(int threads = 1; threads < 2 * cores; threads <<= 1) {
+            counts.add(threads);
+        }
+        counts.add(2 * cores);
+        return counts;
+    }
+}
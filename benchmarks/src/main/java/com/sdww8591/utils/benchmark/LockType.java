@@ -0,0 +1,209 @@
+package com.sdww8591.utils.benchmark;
+
+import com.sdww8591.utils.algorithm.concurrent.AbortableCLHLock;
+import com.sdww8591.utils.algorithm.concurrent.BiasedReadWriteLock;
+import com.sdww8591.utils.algorithm.concurrent.BlockingCLHLock;
+import com.sdww8591.utils.algorithm.concurrent.CLHLock;
+import com.sdww8591.utils.algorithm.concurrent.CohortLock;
+import com.sdww8591.utils.algorithm.concurrent.FlatCombiningLock;
+import com.sdww8591.utils.algorithm.concurrent.MCSLock;
+import com.sdww8591.utils.algorithm.concurrent.TwinsLock;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 参与对比的互斥锁，名字即JMH的@Param取值。
+ * 每个锁都包装成"在锁内执行criticalSection"，这样synchronized和FlatCombiningLock也能用同一套基准测试。
+ * CLH、MCS、Cohort是纯自旋锁，线程数超过核数时持有锁的线程可能正等待被调度，结果会明显变差。
+ */
+public enum LockType {
+
+    SYNCHRONIZED {
+        @Override
+        public LockAdapter create() {
+            final Object monitor = new Object();
+            return criticalSection -> {
+                synchronized(monitor) {
+                    criticalSection.run();
+                }
+            };
+        }
+    },
+
+    REENTRANT {
+        @Override
+        public LockAdapter create() {
+            return reentrant(new ReentrantLock());
+        }
+    },
+
+    REENTRANT_FAIR {
+        @Override
+        public LockAdapter create() {
+            return reentrant(new ReentrantLock(true));
+        }
+    },
+
+    STAMPED {
+        @Override
+        public LockAdapter create() {
+            final StampedLock lock = new StampedLock();
+            return criticalSection -> {
+                long stamp = lock.writeLock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            };
+        }
+    },
+
+    CLH {
+        @Override
+        public LockAdapter create() {
+            final CLHLock lock = new CLHLock();
+            return criticalSection -> {
+                lock.lock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.release();
+                }
+            };
+        }
+    },
+
+    BLOCKING_CLH {
+        @Override
+        public LockAdapter create() {
+            return reentrant(new BlockingCLHLock());
+        }
+    },
+
+    ABORTABLE_CLH {
+        @Override
+        public LockAdapter create() {
+            final AbortableCLHLock lock = new AbortableCLHLock(16, 1024);
+            return criticalSection -> {
+                lock.lock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.release();
+                }
+            };
+        }
+    },
+
+    MCS {
+        @Override
+        public LockAdapter create() {
+            final MCSLock lock = new MCSLock();
+            return criticalSection -> {
+                lock.lock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.release();
+                }
+            };
+        }
+    },
+
+    COHORT {
+        @Override
+        public LockAdapter create() {
+            final CohortLock lock = new CohortLock(2);
+            return criticalSection -> {
+                lock.lock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.release();
+                }
+            };
+        }
+    },
+
+    TWINS {
+        @Override
+        public LockAdapter create() {
+            return twins(new TwinsLock(1, false));
+        }
+    },
+
+    TWINS_FAIR {
+        @Override
+        public LockAdapter create() {
+            return twins(new TwinsLock(1, true));
+        }
+    },
+
+    BIASED_WRITE {
+        @Override
+        public LockAdapter create() {
+            final BiasedReadWriteLock lock = new BiasedReadWriteLock();
+            return criticalSection -> {
+                long stamp = lock.writeLock();
+                try {
+                    criticalSection.run();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            };
+        }
+    },
+
+    FLAT_COMBINING {
+        @Override
+        public LockAdapter create() {
+            final FlatCombiningLock lock = new FlatCombiningLock();
+            //每次调用都要创建一个Operation，这也是实际使用FlatCombiningLock时的开销
+            return criticalSection -> lock.execute(() -> {
+                criticalSection.run();
+                return null;
+            });
+        }
+    };
+
+    /**
+     * @return 包装了一个新锁的LockAdapter
+     */
+    public abstract LockAdapter create();
+
+    private static LockAdapter reentrant(final Lock lock) {
+        return criticalSection -> {
+            lock.lock();
+            try {
+                criticalSection.run();
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * TwinsLock只有一个许可时等价于互斥锁
+     */
+    private static LockAdapter twins(final TwinsLock lock) {
+        return criticalSection -> {
+            lock.lock();
+            try {
+                criticalSection.run();
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    public interface LockAdapter {
+
+        /**
+         * 在锁内执行一次criticalSection，FlatCombiningLock下可能由其他线程执行
+         */
+        void execute(Runnable criticalSection);
+    }
+}
@@ -0,0 +1,79 @@
+package com.sdww8591.utils.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写混合：每次操作以readPercent%的概率读、否则写，读和写都在锁内消耗work个token的CPU。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteLockBenchmark {
+
+    @Param
+    public ReadWriteLockType lockType;
+
+    @Param({"50", "90", "99", "100"})
+    public int readPercent;
+
+    @Param({"0", "50"})
+    public int work;
+
+    private ReadWriteLockType.ReadWriteAdapter lock;
+
+    /**
+     * 写者总是同时修改两个字段，乐观读下这两个字段必须是volatile
+     */
+    private volatile long first;
+
+    private volatile long second;
+
+    private final ReadWriteLockType.Guarded guarded = new ReadWriteLockType.Guarded() {
+        @Override
+        public long read() {
+            Blackhole.consumeCPU(work);
+            return first - second;
+        }
+
+        @Override
+        public void write() {
+            first++;
+            Blackhole.consumeCPU(work);
+            second++;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lock = lockType.create();
+        first = 0;
+        second = 0;
+    }
+
+    @Benchmark
+    public long readOrWrite() {
+        if(ThreadLocalRandom.current().nextInt(100) < readPercent) {
+            return lock.read(guarded);
+        }
+        lock.write(guarded);
+        return 0L;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sdww8591.utils.benchmark;
+
+import com.sdww8591.utils.algorithm.concurrent.BiasedReadWriteLock;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 参与读写混合对比的读写锁。带OPTIMISTIC后缀的先尝试乐观读，校验失败再退回读锁。
+ */
+public enum ReadWriteLockType {
+
+    REENTRANT_RW {
+        @Override
+        public ReadWriteAdapter create() {
+            return reentrant(new ReentrantReadWriteLock());
+        }
+    },
+
+    REENTRANT_RW_FAIR {
+        @Override
+        public ReadWriteAdapter create() {
+            return reentrant(new ReentrantReadWriteLock(true));
+        }
+    },
+
+    STAMPED {
+        @Override
+        public ReadWriteAdapter create() {
+            return stamped(false);
+        }
+    },
+
+    STAMPED_OPTIMISTIC {
+        @Override
+        public ReadWriteAdapter create() {
+            return stamped(true);
+        }
+    },
+
+    BIASED {
+        @Override
+        public ReadWriteAdapter create() {
+            return biased(false);
+        }
+    },
+
+    BIASED_OPTIMISTIC {
+        @Override
+        public ReadWriteAdapter create() {
+            return biased(true);
+        }
+    };
+
+    public abstract ReadWriteAdapter create();
+
+    private static ReadWriteAdapter reentrant(final ReentrantReadWriteLock lock) {
+        return new ReadWriteAdapter() {
+            @Override
+            public long read(Guarded guarded) {
+                lock.readLock().lock();
+                try {
+                    return guarded.read();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public void write(Guarded guarded) {
+                lock.writeLock().lock();
+                try {
+                    guarded.write();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    private static ReadWriteAdapter stamped(final boolean optimistic) {
+        final StampedLock lock = new StampedLock();
+        return new ReadWriteAdapter() {
+            @Override
+            public long read(Guarded guarded) {
+                if(optimistic) {
+                    long stamp = lock.tryOptimisticRead();
+                    long value = guarded.read();
+                    if(lock.validate(stamp)) {
+                        return value;
+                    }
+                }
+                long stamp = lock.readLock();
+                try {
+                    return guarded.read();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+
+            @Override
+            public void write(Guarded guarded) {
+                long stamp = lock.writeLock();
+                try {
+                    guarded.write();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        };
+    }
+
+    private static ReadWriteAdapter biased(final boolean optimistic) {
+        final BiasedReadWriteLock lock = new BiasedReadWriteLock();
+        return new ReadWriteAdapter() {
+            @Override
+            public long read(Guarded guarded) {
+                if(optimistic) {
+                    long stamp = lock.tryOptimisticRead();
+                    long value = guarded.read();
+                    if(lock.validate(stamp)) {
+                        return value;
+                    }
+                }
+                long stamp = lock.readLock();
+                try {
+                    return guarded.read();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+
+            @Override
+            public void write(Guarded guarded) {
+                long stamp = lock.writeLock();
+                try {
+                    guarded.write();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        };
+    }
+
+    public interface ReadWriteAdapter {
+
+        long read(Guarded guarded);
+
+        void write(Guarded guarded);
+    }
+
+    /**
+     * 被读写锁保护的数据
+     */
+    public interface Guarded {
+
+        long read();
+
+        void write();
+    }
+}
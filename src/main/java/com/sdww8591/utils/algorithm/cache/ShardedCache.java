@@ -0,0 +1,340 @@
+package com.sdww8591.utils.algorithm.cache;
+
+import com.sdww8591.utils.algorithm.consistentHash.ConsistentHash;
+import com.sdww8591.utils.algorithm.consistentHash.HashPlacement;
+import com.sdww8591.utils.algorithm.consistentHash.RangeMigration;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分段的LRU缓存：key经ConsistentHash路由到N个互相独立的段，每个段是一个按访问顺序排列的LinkedHashMap，
+ * 由各自的ReentrantLock保护，超出段容量时淘汰最久未访问的元素。不同段上的读写互不干扰，吞吐随核数增长。
+ * 由于段之间按一致性hash划分，段数变化时只有新增段接管或被移除段交出的key需要搬移。
+ * 段号总是0到段数-1，并作为段在hash环上的标识，因此相同的段数总是得到相同的划分。
+ * <ul>
+ *     <li>路由使用key.hashCode()，因此key的hashCode需要足够分散</li>
+ *     <li>读写先按当前hash环找到段并加锁，加锁后再次确认路由，如果期间发生了扩缩容则重新路由</li>
+ *     <li>扩缩容时按段号顺序锁住全部段，替换hash环并搬移受影响的key，期间所有读写短暂阻塞</li>
+ * </ul>
+ * @param <K>
+ * @param <V>
+ */
+public class ShardedCache<K, V> {
+
+    private static final int VIRTUAL_NODE_COUNT = 256;
+
+    private final ConsistentHash<Segment<K, V>> ring;
+
+    /**
+     * 按段号排列的全部段，segments.get(i)的段号为i，只在持有resizeLock时修改
+     */
+    private final List<Segment<K, V>> segments = new ArrayList<>();
+
+    private final ReentrantLock resizeLock = new ReentrantLock();
+
+    private final long maximumSize;
+
+    /**
+     * 已经被移除的段上发生过的淘汰次数，只在持有resizeLock时修改
+     */
+    private volatile long retiredEvictions;
+
+    /**
+     * @param segmentCount 初始段数，通常取CPU核数的若干倍
+     * @param maximumSize 缓存的最大元素个数，平均分配给各个段
+     */
+    public ShardedCache(int segmentCount, long maximumSize) {
+        if(segmentCount < 1) {
+            throw new IllegalArgumentException("segment count must be positive: " + segmentCount);
+        }
+        if(maximumSize < segmentCount) {
+            throw new IllegalArgumentException("maximum size must be at least segment count: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        int capacity = segmentCapacity(segmentCount);
+        for(int i = 0; i < segmentCount; i++) {
+            segments.add(new Segment<K, V>(i, capacity));
+        }
+        this.ring = new ConsistentHash<>(VIRTUAL_NODE_COUNT, segments, new HashPlacement<Segment<K, V>>());
+    }
+
+    public V get(K key) {
+        checkKey(key);
+        Segment<K, V> segment = lock(key);
+        try {
+            return segment.map.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return key原来对应的值，不存在时返回null
+     */
+    public V put(K key, V value) {
+        checkKey(key);
+        if(value == null) {
+            throw new IllegalArgumentException("value must be not null!");
+        }
+        Segment<K, V> segment = lock(key);
+        try {
+            return segment.map.put(key, value);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return key已经存在时返回已有的值且不做修改，否则写入value并返回null
+     */
+    public V putIfAbsent(K key, V value) {
+        checkKey(key);
+        if(value == null) {
+            throw new IllegalArgumentException("value must be not null!");
+        }
+        Segment<K, V> segment = lock(key);
+        try {
+            V current = segment.map.get(key);
+            if(current == null) {
+                segment.map.put(key, value);
+            }
+            return current;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public V remove(K key) {
+        checkKey(key);
+        Segment<K, V> segment = lock(key);
+        try {
+            return segment.map.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return 各段元素个数之和，不是一个瞬时快照
+     */
+    public long size() {
+        long size = 0;
+        for(Segment<K, V> segment : ring.getNodes()) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for(Segment<K, V> segment : ring.getNodes()) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return 因超出段容量而被淘汰的元素总数
+     */
+    public long evictionCount() {
+        long evictions = retiredEvictions;
+        for(Segment<K, V> segment : ring.getNodes()) {
+            segment.lock.lock();
+            try {
+                evictions += segment.evictions;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return evictions;
+    }
+
+    public int segmentCount() {
+        return ring.getNodes().size();
+    }
+
+    /**
+     * 将段数调整为segmentCount：增加时新建段并从其他段接管属于它的key，减少时移除段号最大的段并把其中的key交给接管的段。
+     * 段容量按新的段数重新计算，超出容量的元素在下一次写入时被淘汰。
+     * @return 搬移的元素个数
+     */
+    public long resize(int segmentCount) {
+        if(segmentCount < 1 || maximumSize < segmentCount) {
+            throw new IllegalArgumentException("illegal segment count: " + segmentCount);
+        }
+        resizeLock.lock();
+        try {
+            List<Segment<K, V>> locked = new ArrayList<>(segments);
+            for(Segment<K, V> segment : locked) {
+                segment.lock.lock();
+            }
+            try {
+                long moved = 0;
+                while(segments.size() < segmentCount) {
+                    moved += addSegment(locked);
+                }
+                while(segments.size() > segmentCount) {
+                    moved += removeSegment();
+                }
+                //新增段按当时的段数创建，这里统一修正为最终段数对应的容量
+                int capacity = segmentCapacity(segmentCount);
+                for(Segment<K, V> segment : segments) {
+                    segment.capacity = capacity;
+                    segment.trim();
+                }
+                return moved;
+            } finally {
+                for(Segment<K, V> segment : locked) {
+                    segment.lock.unlock();
+                }
+            }
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * 新段在加入hash环之前先加锁并放入locked，直到整个resize结束才释放；调用方已经持有全部旧段的锁。
+     * 只有addNode返回的迁移区间的来源段中才可能有需要搬移的key
+     */
+    private long addSegment(List<Segment<K, V>> locked) {
+        Segment<K, V> added = new Segment<>(segments.size(), segmentCapacity(segments.size() + 1));
+        added.lock.lock();
+        locked.add(added);
+        Set<Segment<K, V>> sources = new HashSet<>();
+        for(RangeMigration<Segment<K, V>> migration : ring.addNode(added)) {
+            sources.add(migration.getFrom());
+        }
+        segments.add(added);
+        long moved = 0;
+        for(Segment<K, V> segment : sources) {
+            Iterator<Map.Entry<K, V>> iterator = segment.map.entrySet().iterator();
+            while(iterator.hasNext()) {
+                Map.Entry<K, V> entry = iterator.next();
+                if(route(entry.getKey()) == added) {
+                    added.map.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+
+    private long removeSegment() {
+        Segment<K, V> removed = segments.remove(segments.size() - 1);
+        ring.removeNode(removed);
+        long moved = 0;
+        //按访问顺序从旧到新搬移，搬移后在目标段中仍然保持相对的新旧顺序
+        for(Map.Entry<K, V> entry : removed.map.entrySet()) {
+            route(entry.getKey()).map.put(entry.getKey(), entry.getValue());
+            moved++;
+        }
+        removed.map.clear();
+        retiredEvictions += removed.evictions;
+        return moved;
+    }
+
+    /**
+     * 锁住key当前所属的段。加锁期间可能发生了扩缩容，因此加锁后需要再确认一次路由
+     */
+    private Segment<K, V> lock(K key) {
+        while(true) {
+            Segment<K, V> segment = route(key);
+            segment.lock.lock();
+            if(route(key) == segment) {
+                return segment;
+            }
+            segment.lock.unlock();
+        }
+    }
+
+    private Segment<K, V> route(K key) {
+        return ring.getShard((long) key.hashCode());
+    }
+
+    private int segmentCapacity(int segmentCount) {
+        return (int) Math.min(Integer.MAX_VALUE, (maximumSize + segmentCount - 1) / segmentCount);
+    }
+
+    private static void checkKey(Object key) {
+        if(key == null) {
+            throw new IllegalArgumentException("key must be not null!");
+        }
+    }
+
+    private static final class Segment<K, V> {
+
+        private final int id;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LinkedHashMap<K, V> map;
+
+        /**
+         * 以下两个字段只在持有lock时访问
+         */
+        private int capacity;
+
+        private long evictions;
+
+        private Segment(int id, int capacity) {
+            this.id = id;
+            this.capacity = capacity;
+            this.map = new LruMap<>(this);
+        }
+
+        /**
+         * 段容量缩小之后立即淘汰超出部分，而不是等到下一次写入
+         */
+        private void trim() {
+            Iterator<K> iterator = map.keySet().iterator();
+            while(map.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions++;
+            }
+        }
+
+        /**
+         * 按访问顺序排列，写入后超出所属段的容量时淘汰最久未访问的entry
+         */
+        private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+            private static final long serialVersionUID = 1L;
+
+            private final transient Segment<K, V> segment;
+
+            private LruMap(Segment<K, V> segment) {
+                super(16, 0.75f, true);
+                this.segment = segment;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if(size() > segment.capacity) {
+                    segment.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * HashPlacement以toString作为节点标识，段号相同的段在任何进程中都落在环上的同一位置
+         */
+        @Override
+        public String toString() {
+            return "segment-" + id;
+        }
+    }
+}
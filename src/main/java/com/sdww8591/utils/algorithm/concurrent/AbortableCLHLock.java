@@ -0,0 +1,200 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import lombok.SneakyThrows;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可放弃等待的CLH锁（Scott, "Non-blocking timeout in scalable queue-based spin locks"，即TOLock）。
+ * 每个节点只有一个pred字段：
+ * <ul>
+ *     <li>null：节点的持有者正在等待或持有锁</li>
+ *     <li>AVAILABLE：持有者已经释放锁，后继可以进入临界区</li>
+ *     <li>其他节点：持有者已经超时放弃，后继改为等待pred指向的节点</li>
+ * </ul>
+ * 与CLHLock相比：
+ * <ul>
+ *     <li>tryLock可以指定超时时间，超时的等待者离开队列不会阻塞后继</li>
+ *     <li>节点前后各填充56字节，pred独占一条cache line，相邻节点之间不会出现伪共享</li>
+ *     <li>轮询前驱时可以使用指数退避，并在退避达到上限后让出CPU，线程数超过核数时仍然可用</li>
+ * </ul>
+ * 该锁不可重入。
+ */
+public class AbortableCLHLock {
+
+    private static final Node AVAILABLE = new Node();
+
+    /**
+     * 退避达到上限之后每轮询这么多次让出一次CPU
+     */
+    private static final int YIELD_INTERVAL = 64;
+
+    private static final int DEFAULT_MIN_BACKOFF = 16;
+
+    private static final int DEFAULT_MAX_BACKOFF = 1024;
+
+    /**
+     * 只为防止spin中的计算被JIT消除
+     */
+    private static volatile int sink;
+
+    private final AtomicReference<Node> tail = new AtomicReference<>();
+
+    /**
+     * 每次加锁都使用新节点：放弃等待的节点可能仍被后继引用，不能复用
+     */
+    private final ThreadLocal<Node> current = new ThreadLocal<>();
+
+    private final int minBackoff;
+
+    private final int maxBackoff;
+
+    /**
+     * 默认从16次空转开始指数退避，达到1024次之后定期让出CPU，线程数超过核数时持有锁的线程仍能被调度
+     */
+    public AbortableCLHLock() {
+        this(DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param minBackoff 前驱未释放时第一次退避的空转次数，0表示不退避也不让出CPU，
+     *                   只适用于线程数不超过核数的场景，需要显式指定
+     * @param maxBackoff 退避空转次数的上限，每次退避后加倍直到该值
+     */
+    public AbortableCLHLock(int minBackoff, int maxBackoff) {
+        if(minBackoff < 0 || maxBackoff < minBackoff) {
+            throw new IllegalArgumentException("illegal backoff: " + minBackoff + ", " + maxBackoff);
+        }
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public void lock() {
+        acquire(false, 0L);
+    }
+
+    /**
+     * 只有锁空闲时才能成功，不会排队。队尾为null，或者队尾节点已经释放（它的后继超时离开，
+     * 把队尾还给了它）时锁都是空闲的
+     */
+    public boolean tryLock() {
+        Node t = tail.get();
+        if(t != null && t.pred != AVAILABLE) {
+            return false;
+        }
+        Node node = new Node();
+        if(tail.compareAndSet(t, node)) {
+            current.set(node);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 是否在超时之前拿到了锁
+     */
+    public boolean tryLock(long time, TimeUnit unit) {
+        return acquire(true, System.nanoTime() + unit.toNanos(time));
+    }
+
+    private boolean acquire(boolean timed, long deadline) {
+        Node node = new Node();
+        current.set(node);
+        Node predecessor = tail.getAndSet(node);
+        if(predecessor == null || predecessor.pred == AVAILABLE) {
+            return true;
+        }
+        int backoff = minBackoff;
+        int polls = 0;
+        while(!timed || System.nanoTime() < deadline) {
+            Node next = predecessor.pred;
+            if(next == AVAILABLE) {
+                return true;
+            }
+            if(next != null) {
+                //前驱放弃了等待，改为等待前驱的前驱
+                predecessor = next;
+                continue;
+            }
+            if(backoff > 0) {
+                spin(backoff);
+                if(backoff < maxBackoff) {
+                    backoff = Math.min(maxBackoff, backoff << 1);
+                } else if(++polls % YIELD_INTERVAL == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+        //超时：如果自己是队尾，直接把队尾还给前驱；否则通过pred告诉后继改为等待前驱
+        if(!tail.compareAndSet(node, predecessor)) {
+            node.pred = predecessor;
+        }
+        current.remove();
+        return false;
+    }
+
+    /**
+     * 空转若干次。Java 7没有Thread.onSpinWait，这里用局部变量上的一段计算代替，
+     * 计算结果有机会写入sink，因此不会被JIT消除
+     */
+    private static void spin(int iterations) {
+        int seed = iterations;
+        for(int i = 0; i < iterations; i++) {
+            seed = seed * 1103515245 + 12345;
+        }
+        if(seed == 0) {
+            sink = seed;
+        }
+    }
+
+    public void release() {
+        Node node = current.get();
+        if(node == null) {
+            throw new IllegalMonitorStateException();
+        }
+        current.remove();
+        //没有后继时直接清空队尾，否则通知后继
+        if(!tail.compareAndSet(node, null)) {
+            node.pred = AVAILABLE;
+        }
+    }
+
+    /**
+     * 填充字段与pred分别放在不同层级的类中：JVM只会在同一个类的字段之间重排，
+     * 父类的字段总是排在子类之前，从而保证pred前后都至少有56字节的填充
+     */
+    abstract static class LeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    abstract static class PredField extends LeftPadding {
+        volatile Node pred;
+    }
+
+    static final class Node extends PredField {
+        long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+    public static void main(String[] args) {
+        final AbortableCLHLock lock = new AbortableCLHLock(16, 1024);
+        for(int i = 0; i < 3; i++) {
+            final int j = i;
+            new Thread(new Runnable() {
+                @Override
+                @SneakyThrows
+                public void run() {
+                    System.out.println("thread-" + j + " started!");
+                    if(!lock.tryLock(3, TimeUnit.SECONDS)) {
+                        System.out.println("thread-" + j + " timed out!");
+                        return;
+                    }
+                    System.out.println("thread-" + j + " get lock!");
+                    TimeUnit.SECONDS.sleep(2);
+                    System.out.println("thread-" + j + " release lock!");
+                    lock.release();
+                }
+            }).start();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import lombok.SneakyThrows;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 偏向读者的读写锁（Dice &amp; Kogan, "BRAVO: Biased Locking for Reader-Writer Locks"），
+ * 用于保护路由环、字典这类读多写少的结构。
+ * <ul>
+ *     <li>ReentrantReadWriteLock的所有读者都要CAS同一个state，核数越多cache line来回迁移越严重</li>
+ *     <li>偏向读者时，读者只在按线程散列的槽位中写入自己的线程id，不同线程大概率落在不同的cache line上</li>
+ *     <li>写者先拿到底层的写锁，再撤销偏向并等待所有槽位上的读者离开；撤销花费的时间乘以INHIBIT_MULTIPLIER
+ *     作为禁止重新偏向的时长，保证写多的时候读者退回底层锁，不会反复撤销</li>
+ *     <li>槽位冲突或者偏向被撤销的读者使用底层的读锁，并在禁止期过后重新开启偏向</li>
+ *     <li>tryOptimisticRead/validate提供与StampedLock相同的乐观读：写者持锁期间seq为奇数</li>
+ * </ul>
+ * 与StampedLock一样，读锁和写锁都不可重入，解锁时需要传入加锁返回的stamp。
+ * Java 7没有loadFence，validate只是对seq的一次volatile读，乐观读取的字段需要声明为volatile，
+ * 否则对这些字段的读取可能被重排到validate之后。
+ */
+public class BiasedReadWriteLock {
+
+    /**
+     * 撤销偏向花费的时间乘以该值作为禁止重新偏向的时长，BRAVO论文中取9
+     */
+    private static final int INHIBIT_MULTIPLIER = 9;
+
+    /**
+     * 每个槽位占8个long，即64字节，相邻槽位不在同一条cache line上
+     */
+    private static final int SLOT_SHIFT = 3;
+
+    /**
+     * 底层读锁返回的stamp，偏向读者返回的stamp是槽位下标加1
+     */
+    private static final long SLOW_READ = -1L;
+
+    /**
+     * 等待读者离开时每轮询这么多次让出一次CPU
+     */
+    private static final int YIELD_MASK = 0x3f;
+
+    private final ReentrantReadWriteLock underlying = new ReentrantReadWriteLock();
+
+    /**
+     * 读者槽位，0表示空闲，否则为持有读锁的线程id
+     */
+    private final AtomicLongArray readers;
+
+    private final int mask;
+
+    private volatile boolean readBias = true;
+
+    /**
+     * 在这个时间点之前不允许重新开启偏向，只在持有底层锁时修改
+     */
+    private volatile long inhibitUntil;
+
+    /**
+     * 写者持锁期间为奇数，只在持有底层写锁时修改；从2开始，保证有效的stamp不为0
+     */
+    private final AtomicLong seq = new AtomicLong(2L);
+
+    /**
+     * 默认槽位数为核数的4倍向上取整到2的幂
+     */
+    public BiasedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param slots 读者槽位数，会向上取整到2的幂；槽位越多冲突越少，但写者撤销偏向时要扫描的槽位也越多
+     */
+    public BiasedReadWriteLock(int slots) {
+        if(slots < 1 || slots > 1 << 20) {
+            throw new IllegalArgumentException("illegal slots: " + slots);
+        }
+        int size = Integer.highestOneBit(slots);
+        if(size < slots) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.readers = new AtomicLongArray(size << SLOT_SHIFT);
+    }
+
+    /**
+     * @return 传给unlockRead的stamp
+     */
+    public long readLock() {
+        if(readBias) {
+            long id = Thread.currentThread().getId();
+            int slot = slotOf(id);
+            int index = slot << SLOT_SHIFT;
+            if(readers.compareAndSet(index, 0L, id)) {
+                //写者先关闭偏向再扫描槽位，这里先占槽位再检查偏向，两者至少有一方能看到对方
+                if(readBias) {
+                    return slot + 1;
+                }
+                readers.set(index, 0L);
+            }
+        }
+        underlying.readLock().lock();
+        if(!readBias && System.nanoTime() - inhibitUntil >= 0) {
+            readBias = true;
+        }
+        return SLOW_READ;
+    }
+
+    public void unlockRead(long stamp) {
+        if(stamp == SLOW_READ) {
+            underlying.readLock().unlock();
+            return;
+        }
+        int index = (int) (stamp - 1) << SLOT_SHIFT;
+        if(stamp < 1 || stamp > mask + 1 || readers.get(index) != Thread.currentThread().getId()) {
+            throw new IllegalMonitorStateException("illegal read stamp: " + stamp);
+        }
+        readers.set(index, 0L);
+    }
+
+    /**
+     * @return 传给unlockWrite的stamp
+     */
+    public long writeLock() {
+        underlying.writeLock().lock();
+        if(readBias) {
+            revokeBias();
+        }
+        return seq.incrementAndGet();
+    }
+
+    /**
+     * 只有没有任何读者和写者时才能成功，成功时返回stamp，失败返回0
+     */
+    public long tryWriteLock() {
+        if(!underlying.writeLock().tryLock()) {
+            return 0L;
+        }
+        if(readBias) {
+            readBias = false;
+            for(int i = 0; i <= mask; i++) {
+                if(readers.get(i << SLOT_SHIFT) != 0L) {
+                    readBias = true;
+                    underlying.writeLock().unlock();
+                    return 0L;
+                }
+            }
+        }
+        return seq.incrementAndGet();
+    }
+
+    public void unlockWrite(long stamp) {
+        if(!underlying.isWriteLockedByCurrentThread() || stamp != seq.get()) {
+            throw new IllegalMonitorStateException("illegal write stamp: " + stamp);
+        }
+        seq.incrementAndGet();
+        underlying.writeLock().unlock();
+    }
+
+    /**
+     * @return 写锁被持有时返回0，否则返回用于validate的stamp
+     */
+    public long tryOptimisticRead() {
+        long s = seq.get();
+        return (s & 1L) == 0 ? s : 0L;
+    }
+
+    /**
+     * @return 从tryOptimisticRead返回stamp到现在，是否没有写者获取过写锁
+     */
+    public boolean validate(long stamp) {
+        return stamp != 0L && seq.get() == stamp;
+    }
+
+    public boolean isReadBiased() {
+        return readBias;
+    }
+
+    public boolean isWriteLocked() {
+        return underlying.isWriteLocked();
+    }
+
+    private void revokeBias() {
+        readBias = false;
+        long start = System.nanoTime();
+        for(int i = 0; i <= mask; i++) {
+            int index = i << SLOT_SHIFT;
+            for(int polls = 1; readers.get(index) != 0L; polls++) {
+                if((polls & YIELD_MASK) == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+        long now = System.nanoTime();
+        inhibitUntil = now + (now - start) * INHIBIT_MULTIPLIER;
+    }
+
+    private int slotOf(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    /**
+     * 对比与ReentrantReadWriteLock的纯读吞吐量
+     */
+    @SneakyThrows
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        final int rounds = 2_000_000;
+        for(int round = 0; round < 3; round++) {
+            final BiasedReadWriteLock biased = new BiasedReadWriteLock();
+            final ReentrantReadWriteLock plain = new ReentrantReadWriteLock();
+            long biasedNanos = run(threads, new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < rounds; i++) {
+                        biased.unlockRead(biased.readLock());
+                    }
+                }
+            });
+            long plainNanos = run(threads, new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < rounds; i++) {
+                        plain.readLock().lock();
+                        plain.readLock().unlock();
+                    }
+                }
+            });
+            System.out.println(threads + " readers, biased: " + TimeUnit.NANOSECONDS.toMillis(biasedNanos)
+                    + "ms, ReentrantReadWriteLock: " + TimeUnit.NANOSECONDS.toMillis(plainNanos) + "ms");
+        }
+    }
+
+    @SneakyThrows
+    private static long run(int threads, Runnable task) {
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread(task);
+        }
+        long start = System.nanoTime();
+        for(Thread worker : workers) {
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
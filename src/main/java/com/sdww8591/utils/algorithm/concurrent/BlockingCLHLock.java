@@ -1,105 +1,457 @@
 package com.sdww8591.utils.algorithm.concurrent;
 
-import lombok.Getter;
-import lombok.Setter;
+import lombok.SneakyThrows;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class BlockingCLHLock {
+/**
+ * 阻塞版的CLH锁：与CLHLock一样，每个等待者只关注前驱节点的状态，按先来先服务的顺序获得锁；
+ * 不同的是等待者先自旋一段时间，前驱仍未释放时将自己登记在前驱节点上并park，由前驱释放锁时unpark。
+ * <ul>
+ *     <li>每次加锁都使用一个新节点，节点状态只会由WAITING变为RELEASED或CANCELLED，不会被复用，因此不存在ABA问题</li>
+ *     <li>超时或被中断的等待者把自己的节点标记为CANCELLED后离开队列，后继沿previous跳过被取消的节点</li>
+ *     <li>等待者先写waiter再读前驱状态，释放者先写状态再读waiter（Dekker式握手），二者至少有一方能看到对方，不会丢失唤醒</li>
+ *     <li>自旋上限根据最近的结果自适应调整：自旋期间拿到锁就加倍，最终仍需park就减半，临界区很短时避免park/unpark的系统调用，
+ *     等待时间较长时也不会白白消耗CPU</li>
+ * </ul>
+ * 该锁不可重入，持有锁的线程再次加锁会导致死锁。
+ */
+public class BlockingCLHLock implements Lock {
+
+    private static final int WAITING = 0;
+
+    private static final int RELEASED = 1;
+
+    private static final int CANCELLED = 2;
+
+    /**
+     * 条件队列中等待者的状态，初始状态同样为WAITING
+     */
+    private static final int SIGNALLED = 1;
+
+    private static final int TIMED_OUT = 2;
+
+    private static final int INTERRUPTED = 3;
+
+    private static final int MIN_SPINS = 16;
+
+    private static final int MAX_SPINS = 1 << 12;
+
+    /**
+     * 剩余等待时间小于该值时不再park，直接自旋到超时
+     */
+    private static final long SPIN_FOR_TIMEOUT_THRESHOLD = 1000L;
+
+    private final AtomicReference<Node> tail = new AtomicReference<>(new Node(RELEASED));
+
+    /**
+     * 以下两个字段只由持有锁的线程读写，锁的交接（前驱状态的volatile写与读）保证了可见性
+     */
+    private Node ownerNode;
+
+    private Thread ownerThread;
+
+    /**
+     * 当前的自旋上限。多个线程并发更新时可能互相覆盖，但这只影响调优效果，因此不需要同步
+     */
+    private int spinLimit = 256;
+
+    @Override
+    public void lock() {
+        acquire(false, false, 0L);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if(!acquire(true, false, 0L)) {
+            //acquire放弃等待时保留了中断标记，抛出InterruptedException时需要清除
+            Thread.interrupted();
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * 只有当前没有任何线程持有或等待锁时才能成功，不会排队
+     */
+    @Override
+    public boolean tryLock() {
+        Node last = tail.get();
+        Node predecessor = last;
+        while(predecessor.state == CANCELLED) {
+            predecessor = predecessor.previous;
+        }
+        if(predecessor.state != RELEASED) {
+            return false;
+        }
+        //last之前的节点状态都已经终结，只要tail没有变化，新节点就一定直接拿到锁
+        Node node = new Node(WAITING);
+        node.previous = last;
+        if(!tail.compareAndSet(last, node)) {
+            return false;
+        }
+        setOwner(node);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long nanos = unit.toNanos(time);
+        if(nanos <= 0) {
+            return tryLock();
+        }
+        if(acquire(true, true, System.nanoTime() + nanos)) {
+            return true;
+        }
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return false;
+    }
 
     /**
-     * 用于标记当前lock的状态。
-     * 由于BlockingCLHLock是由释放锁的线程来唤醒等待线程，如果lock此时没有被任何线程锁拥有，新添加的线程将由于没有唤醒者无限等待
-     * 因此对于没有被任何线程所拥有的锁的处理方式将被区分开来区别对待
+     * @param interruptible 被中断时是否放弃等待，放弃时保留中断标记
+     * @param timed 是否有超时时间
+     * @param deadline 超时的System.nanoTime()
+     * @return 是否拿到了锁
      */
-    private AtomicBoolean lockStatus = new AtomicBoolean(false);
+    private boolean acquire(boolean interruptible, boolean timed, long deadline) {
+        Node node = new Node(WAITING);
+        Node predecessor = tail.getAndSet(node);
+        node.previous = predecessor;
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        int spins = Spins.spinAllowed() ? spinLimit : 0;
+        boolean parked = false;
+        while(true) {
+            int state = predecessor.state;
+            if(state == RELEASED) {
+                break;
+            }
+            if(state == CANCELLED) {
+                predecessor = predecessor.previous;
+                node.previous = predecessor;
+                continue;
+            }
+            if(spins > 0) {
+                spins--;
+                Spins.onSpinWait();
+                continue;
+            }
+            long remaining = timed ? deadline - System.nanoTime() : 0L;
+            if(timed && remaining <= 0) {
+                cancel(node);
+                return false;
+            }
+            if(timed && remaining < SPIN_FOR_TIMEOUT_THRESHOLD) {
+                continue;
+            }
+            predecessor.waiter = current;
+            //登记之后再确认一次，避免前驱在登记之前已经释放而错过唤醒
+            if(predecessor.state == WAITING) {
+                parked = true;
+                if(timed) {
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            if(Thread.interrupted()) {
+                if(interruptible) {
+                    cancel(node);
+                    current.interrupt();
+                    return false;
+                }
+                interrupted = true;
+            }
+        }
+        adjustSpinLimit(parked);
+        setOwner(node);
+        if(interrupted) {
+            current.interrupt();
+        }
+        return true;
+    }
 
-    private AtomicReference<Node> tail = new AtomicReference<>();
+    private void adjustSpinLimit(boolean parked) {
+        int limit = spinLimit;
+        if(parked && limit > MIN_SPINS) {
+            spinLimit = limit >>> 1;
+        } else if(!parked && limit < MAX_SPINS) {
+            spinLimit = limit << 1;
+        }
+    }
 
-    private AtomicReference<Node> head = new AtomicReference<>();
+    /**
+     * 放弃等待：后继会沿着node.previous跳过该节点，如果后继已经park在该节点上则唤醒它
+     */
+    private void cancel(Node node) {
+        node.state = CANCELLED;
+        Thread waiter = node.waiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private void setOwner(Node node) {
+        //前驱已经不再被访问，断开引用帮助GC
+        node.previous = null;
+        ownerNode = node;
+        ownerThread = Thread.currentThread();
+    }
+
+    @Override
+    public void unlock() {
+        if(ownerThread != Thread.currentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        Node node = ownerNode;
+        ownerNode = null;
+        ownerThread = null;
+        node.state = RELEASED;
+        Thread waiter = node.waiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * 与unlock相同，保留原有的方法名
+     */
+    public void release() {
+        unlock();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return ownerThread == Thread.currentThread();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new ConditionObject();
+    }
+
+    static final class Node {
+
+        /**
+         * WAITING：持有者正在等待或持有锁；RELEASED：持有者已经释放锁；CANCELLED：持有者放弃了等待
+         */
+        volatile int state;
+
+        /**
+         * 仍在等待的前驱，节点被取消后后继通过它跳过该节点
+         */
+        volatile Node previous;
+
+        /**
+         * park在本节点上的后继线程
+         */
+        volatile Thread waiter;
+
+        Node(int state) {
+            this.state = state;
+        }
+    }
+
+    /**
+     * 条件队列只由持有锁的线程修改，因此使用普通的ArrayDeque即可；
+     * 等待者的状态用CAS在signal与超时/中断之间仲裁，被取消的等待者不会吞掉signal
+     */
+    private final class ConditionObject implements Condition {
+
+        private final ArrayDeque<ConditionWaiter> waiters = new ArrayDeque<>();
 
-    private ThreadLocal<Node> current = new ThreadLocal<Node>(){
         @Override
-        protected Node initialValue() {
-            Node result = new Node(false);
-            result.setThread(Thread.currentThread());
-            return result;
+        public void await() throws InterruptedException {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if(await(true, false, 0L) == INTERRUPTED) {
+                throw new InterruptedException();
+            }
         }
-    };
 
-    public void lock() {
-        if(!lockStatus.compareAndSet(false, true)) {
-
-            Node currentNode = current.get();
-            //将currentNode节点放入Queue中
-            for(;;) {
-                if(tail.get() == null) {
-                    if(tail.compareAndSet(null, new Node(false))) {
-                        head.set(tail.get());
+        @Override
+        public void awaitUninterruptibly() {
+            await(false, false, 0L);
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long deadline = System.nanoTime() + nanosTimeout;
+            if(await(true, true, deadline) == INTERRUPTED) {
+                throw new InterruptedException();
+            }
+            return deadline - System.nanoTime();
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            return awaitNanos(unit.toNanos(time)) > 0;
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            return await(deadline.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return 等待者最终的状态
+         */
+        private int await(boolean interruptible, boolean timed, long deadline) {
+            if(!isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            ConditionWaiter waiter = new ConditionWaiter(Thread.currentThread());
+            waiters.addLast(waiter);
+            unlock();
+            boolean interrupted = false;
+            while(waiter.state.get() == WAITING) {
+                if(timed) {
+                    long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0) {
+                        waiter.state.compareAndSet(WAITING, TIMED_OUT);
+                        break;
                     }
+                    LockSupport.parkNanos(this, remaining);
                 } else {
-                    Node tailNode = tail.get();
-                    currentNode.setPrevious(tailNode);
-                    if(tail.compareAndSet(tailNode, currentNode)) {
-                        tailNode.setNext(currentNode);
+                    LockSupport.park(this);
+                }
+                if(Thread.interrupted()) {
+                    interrupted = true;
+                    if(interruptible && waiter.state.compareAndSet(WAITING, INTERRUPTED)) {
                         break;
                     }
                 }
             }
+            lock();
+            int state = waiter.state.get();
+            if(state != SIGNALLED) {
+                waiters.remove(waiter);
+            }
+            //被signal之后才发生的中断只恢复中断标记，不抛出异常
+            if(interrupted && state != INTERRUPTED) {
+                Thread.currentThread().interrupt();
+            }
+            return state;
+        }
 
-            //实现阻塞
-            for(;;) {
-                //在我们将node放至队列末尾时，前面的节点释放了锁，当前线程可以直接获取到锁资源，不用block
-                if(currentNode.getPrevious().equals(head.get())
-                        && lockStatus.compareAndSet(false, true)) {
-                    //由于将node添加至queue了，这里需要将node从等待队列中取出
-                    head.set(currentNode);
-                    currentNode.setNext(null); //这里是为了帮助GC
-                    break;
-                } else {
-                    LockSupport.park(currentNode);
-                    break;
+        @Override
+        public void signal() {
+            if(!isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            ConditionWaiter waiter;
+            while((waiter = waiters.pollFirst()) != null) {
+                if(waiter.signal()) {
+                    return;
                 }
             }
         }
-    }
 
-    public void release() {
-        for(;;) {
-            Node headNode = head.get();
-            if(headNode.getNext() == null) {
-                this.lockStatus.compareAndSet(true, false);
+        @Override
+        public void signalAll() {
+            if(!isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException();
             }
-            Node nextHead = headNode.getNext();
-            if(head.compareAndSet(headNode, nextHead)) {
-                nextHead.setPrevious(null);
-                LockSupport.unpark(nextHead.thread);
+            ConditionWaiter waiter;
+            while((waiter = waiters.pollFirst()) != null) {
+                waiter.signal();
             }
         }
     }
 
-    class Node {
+    private static final class ConditionWaiter {
+
+        private final Thread thread;
+
         /**
-         * status为true代表线程已释放lock
-         * status为false代表线程未拿到或者已经拿到lock但未释放
+         * WAITING -> SIGNALLED / TIMED_OUT / INTERRUPTED，只会变化一次
          */
-        @Setter
-        @Getter
-        private volatile boolean status;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
 
-        @Getter @Setter
-        private volatile Node previous;
+        private ConditionWaiter(Thread thread) {
+            this.thread = thread;
+        }
 
-        @Getter @Setter
-        private volatile Node next;
+        private boolean signal() {
+            if(state.compareAndSet(WAITING, SIGNALLED)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+    }
 
-        @Getter @Setter
-        private volatile Thread thread;
+    /**
+     * 交接延迟对比：多个线程反复争抢同一把锁并执行一个很短的临界区，锁几乎每次都要在线程之间交接，
+     * 每次加解锁的平均耗时主要由交接延迟决定
+     */
+    public static void main(String[] args) {
+        int[] threadCounts = {2, 4, 8};
+        int operations = 1 << 20;
+        for(int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "warm up" : "measure");
+            for(int threads : threadCounts) {
+                report("BlockingCLHLock", threads, handoff(new BlockingCLHLock(), threads, operations));
+                report("ReentrantLock", threads, handoff(new ReentrantLock(), threads, operations));
+                report("ReentrantLock(fair)", threads, handoff(new ReentrantLock(true), threads, operations));
+            }
+        }
+    }
+
+    private static void report(String name, int threads, long nanos) {
+        System.out.println(String.format("%-24s threads: %d, %.1f ns/op", name, threads, (double) nanos / (1 << 20)));
+    }
 
-        public Node(boolean status) {
-            this.status = status;
+    @SneakyThrows
+    private static long handoff(final Lock lock, int threads, final int operations) {
+        final int perThread = operations / threads;
+        final long[] counter = new long[1];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                @SneakyThrows
+                public void run() {
+                    start.await();
+                    for(int j = 0; j < perThread; j++) {
+                        lock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        if(counter[0] != (long) perThread * threads) {
+            throw new IllegalStateException("lost update: " + counter[0]);
         }
+        return elapsed;
     }
 }
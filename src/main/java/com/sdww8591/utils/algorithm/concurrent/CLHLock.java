@@ -15,6 +15,10 @@ import java.util.concurrent.atomic.AtomicReference;
 public class CLHLock {
 
     private AtomicReference<Node> tail = new AtomicReference<>(new Node(true));
+    /**
+     * 持有锁的线程，只由持有锁的线程写；其他线程release时读到的不可能是自己，因此不需要volatile
+     */
+    private Thread ownerThread;
     private ThreadLocal<Node> current = new ThreadLocal<Node>(){
         @Override
         protected Node initialValue() {
@@ -30,9 +34,40 @@ public class CLHLock {
         while (!tailNode.isStatus()) {
             //spin
         }
+        ownerThread = Thread.currentThread();
     }
 
+    /**
+     * 只有队尾节点已经释放（没有线程持有或等待锁）时才尝试入队，成功后直接拿到锁。
+     * 节点会被复用：读取队尾之后，队尾节点可能已经被它的后继回收并重新入队（ABA），
+     * 此时CAS仍然成功，但前驱尚未释放，只能像lock()一样等待前驱释放，因为CLH队列中的节点无法撤出
+     */
+    public boolean tryLock() {
+        Node tailNode = tail.get();
+        if(!tailNode.isStatus()) {
+            return false;
+        }
+        Node currentNode = current.get();
+        currentNode.setStatus(false);
+        if(!tail.compareAndSet(tailNode, currentNode)) {
+            return false;
+        }
+        currentNode.setPrevious(tailNode);
+        while (!tailNode.isStatus()) {
+            //spin
+        }
+        ownerThread = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * @throws IllegalMonitorStateException 当前线程没有持有锁
+     */
     public void release() {
+        if(ownerThread != Thread.currentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        ownerThread = null;
         Node currentNode = current.get();
         currentNode.setStatus(true);
         //此处本应该set一个new node，同时当前Node的previousNode生命周期也已经结束，此时应该被VM回收
@@ -0,0 +1,26 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+/**
+ * 决定线程属于哪个cluster（通常对应一个NUMA节点/socket），供CohortLock使用。
+ * 同一个线程在一次lock与对应的release之间必须返回相同的结果；
+ * 实现不依赖硬件探测，调用方可以按照线程池、线程名或者启动时绑定的CPU亲和性自行分组。
+ */
+public interface ClusterSelector {
+
+    /**
+     * 按线程id取模，适用于没有任何分组信息时，保证同一个线程总在同一个cluster中
+     */
+    ClusterSelector BY_THREAD_ID = new ClusterSelector() {
+        @Override
+        public int clusterOf(Thread thread, int clusters) {
+            return (int) (thread.getId() % clusters);
+        }
+    };
+
+    /**
+     * @param thread 当前线程
+     * @param clusters cluster总数
+     * @return [0, clusters)之间的cluster序号
+     */
+    int clusterOf(Thread thread, int clusters);
+}
@@ -0,0 +1,238 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 层次化的cohort锁（Dice, Marathe, Shavit, "Lock Cohorting"，C-TKT-MCS）：
+ * 每个cluster有一把本地MCS锁，所有cluster共享一把全局ticket锁。
+ * <ul>
+ *     <li>线程先拿到本cluster的本地锁；如果前驱是在持有全局锁的情况下把本地锁交给它的，就直接进入临界区，否则再去拿全局锁</li>
+ *     <li>释放时如果本cluster还有等待者，并且连续本地交接次数没有超过上限，就只交出本地锁，全局锁留在cluster内部</li>
+ *     <li>否则释放全局锁，再释放本地锁，让其他cluster有机会拿到锁，上限保证了cluster之间不会饥饿</li>
+ * </ul>
+ * 由于全局锁可能由另一个线程获取、由本线程释放，全局锁必须与线程无关，ticket锁正好满足这一点。
+ * 锁在一个cluster内部交接时，受保护的数据与锁本身的cache line都不需要跨socket迁移。
+ * 与CLHLock一样提供lock/release，不可重入。
+ */
+public class CohortLock {
+
+    private static final int WAITING = 0;
+
+    /**
+     * 前驱交出本地锁时释放了全局锁，后继需要自己获取全局锁
+     */
+    private static final int ACQUIRE_GLOBAL = 1;
+
+    /**
+     * 前驱交出本地锁时保留了全局锁，后继直接进入临界区
+     */
+    private static final int GLOBAL_HELD = 2;
+
+    private static final int DEFAULT_MAX_LOCAL_HANDOFFS = 64;
+
+    private static final AtomicReferenceFieldUpdater<ClusterFields, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(ClusterFields.class, Node.class, "tail");
+
+    private final ClusterSelector selector;
+
+    private final Cluster[] clusters;
+
+    private final int maxLocalHandoffs;
+
+    private final AtomicInteger nextTicket = new AtomicInteger();
+
+    private volatile int nowServing;
+
+    private final ThreadLocal<Node> current = new ThreadLocal<Node>() {
+        @Override
+        protected Node initialValue() {
+            return new Node();
+        }
+    };
+
+    public CohortLock(int clusterCount) {
+        this(clusterCount, ClusterSelector.BY_THREAD_ID, DEFAULT_MAX_LOCAL_HANDOFFS);
+    }
+
+    /**
+     * @param clusterCount cluster个数，通常为socket个数
+     * @param selector 线程到cluster的映射
+     * @param maxLocalHandoffs 全局锁在一个cluster内部最多连续交接的次数，越大吞吐越高，但其他cluster等待越久
+     */
+    public CohortLock(int clusterCount, ClusterSelector selector, int maxLocalHandoffs) {
+        if(clusterCount < 1) {
+            throw new IllegalArgumentException("cluster count must be positive: " + clusterCount);
+        }
+        if(selector == null) {
+            throw new IllegalArgumentException("cluster selector must be not null!");
+        }
+        if(maxLocalHandoffs < 0) {
+            throw new IllegalArgumentException("max local handoffs must not be negative: " + maxLocalHandoffs);
+        }
+        this.selector = selector;
+        this.maxLocalHandoffs = maxLocalHandoffs;
+        this.clusters = new Cluster[clusterCount];
+        for(int i = 0; i < clusterCount; i++) {
+            clusters[i] = new Cluster();
+        }
+    }
+
+    public void lock() {
+        Thread thread = Thread.currentThread();
+        int index = selector.clusterOf(thread, clusters.length);
+        if(index < 0 || index >= clusters.length) {
+            throw new IllegalStateException("illegal cluster: " + index);
+        }
+        Node node = current.get();
+        node.cluster = clusters[index];
+        if(lockLocal(node) != GLOBAL_HELD) {
+            lockGlobal();
+        }
+    }
+
+    /**
+     * 只有本cluster的本地锁与全局锁都空闲时才能成功，不会排队：
+     * 先CAS本地队尾由null到自己的节点，再CAS取号，只有号码恰好等于nowServing时才取号，
+     * 拿不到全局锁时释放本地锁，期间到达的本地后继会自己去拿全局锁
+     */
+    public boolean tryLock() {
+        Thread thread = Thread.currentThread();
+        int index = selector.clusterOf(thread, clusters.length);
+        if(index < 0 || index >= clusters.length) {
+            throw new IllegalStateException("illegal cluster: " + index);
+        }
+        Cluster cluster = clusters[index];
+        if(cluster.tail != null || nextTicket.get() != nowServing) {
+            return false;
+        }
+        Node node = current.get();
+        node.next = null;
+        node.state = WAITING;
+        if(!TAIL.compareAndSet(cluster, null, node)) {
+            return false;
+        }
+        int serving = nowServing;
+        if(nextTicket.compareAndSet(serving, serving + 1)) {
+            node.cluster = cluster;
+            return true;
+        }
+        releaseLocal(cluster, node, ACQUIRE_GLOBAL);
+        return false;
+    }
+
+    public void release() {
+        Node node = current.get();
+        Cluster cluster = node.cluster;
+        if(cluster == null) {
+            throw new IllegalMonitorStateException();
+        }
+        node.cluster = null;
+        if(cluster.handoffs < maxLocalHandoffs && hasLocalSuccessor(cluster, node)) {
+            cluster.handoffs++;
+            releaseLocal(cluster, node, GLOBAL_HELD);
+            return;
+        }
+        cluster.handoffs = 0;
+        releaseGlobal();
+        releaseLocal(cluster, node, ACQUIRE_GLOBAL);
+    }
+
+    /**
+     * @return 前驱交出本地锁时的状态，没有前驱时为ACQUIRE_GLOBAL
+     */
+    private int lockLocal(Node node) {
+        node.next = null;
+        node.state = WAITING;
+        Node predecessor = TAIL.getAndSet(node.cluster, node);
+        if(predecessor == null) {
+            return ACQUIRE_GLOBAL;
+        }
+        predecessor.next = node;
+        int spins = 0;
+        int state;
+        while((state = node.state) == WAITING) {
+            if((++spins & MCSLock.YIELD_MASK) == 0) {
+                Thread.yield();
+            }
+        }
+        return state;
+    }
+
+    private boolean hasLocalSuccessor(Cluster cluster, Node node) {
+        return node.next != null || cluster.tail != node;
+    }
+
+    private void releaseLocal(Cluster cluster, Node node, int state) {
+        Node successor = node.next;
+        if(successor == null) {
+            //只有没有保留全局锁时才可能走到这里清空队尾，否则hasLocalSuccessor已经确认有后继
+            if(state == ACQUIRE_GLOBAL && TAIL.compareAndSet(cluster, node, null)) {
+                return;
+            }
+            int spins = 0;
+            while((successor = node.next) == null) {
+                if((++spins & MCSLock.YIELD_MASK) == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+        node.next = null;
+        successor.state = state;
+    }
+
+    /**
+     * 全局ticket锁：谁取号谁等待，释放时任何线程都可以把nowServing加1
+     */
+    private void lockGlobal() {
+        int ticket = nextTicket.getAndIncrement();
+        int spins = 0;
+        while(nowServing != ticket) {
+            if((++spins & MCSLock.YIELD_MASK) == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private void releaseGlobal() {
+        //只有持有全局锁的线程会写nowServing，不需要CAS
+        nowServing = nowServing + 1;
+    }
+
+    static final class Node {
+
+        volatile int state;
+
+        volatile Node next;
+
+        /**
+         * 加锁时所在的cluster，release时使用，只由节点所属线程访问
+         */
+        Cluster cluster;
+    }
+
+    /**
+     * 填充字段与tail分别放在不同层级的类中：JVM只会在同一个类的字段之间重排，父类的字段总是排在子类之前，
+     * 从而保证tail与handoffs前后都至少有56字节的填充，不同cluster的tail不会落在同一条cache line上
+     */
+    abstract static class ClusterLeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    abstract static class ClusterFields extends ClusterLeftPadding {
+
+        /**
+         * cluster内MCS队列的队尾，直接放在填充之间，通过TAIL原子更新
+         */
+        volatile Node tail;
+
+        /**
+         * 全局锁在本cluster内连续交接的次数，只由持有锁的线程访问
+         */
+        int handoffs;
+    }
+
+    static final class Cluster extends ClusterFields {
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+}
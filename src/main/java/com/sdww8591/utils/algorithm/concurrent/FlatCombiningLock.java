@@ -0,0 +1,318 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import lombok.SneakyThrows;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flat combining（Hendler et al., "Flat Combining and the Synchronization-Parallelism Tradeoff"）：
+ * 把"在锁内执行一段操作"委托给当前持有锁的线程。
+ * <ul>
+ *     <li>每个线程在发布链表中有一个自己的Record，要执行的操作写入Record.operation后自旋等待</li>
+ *     <li>拿到底层锁的线程成为combiner，遍历发布链表，依次执行所有挂起的操作并写回结果，再释放锁</li>
+ *     <li>被保护的数据只在combiner的cache中被修改，不会随着每次锁交接在核之间来回迁移；
+ *     等待者只自旋在自己的Record上，每隔一段时间才尝试一次底层锁，避免反复写锁所在的cache line</li>
+ *     <li>自旋一段时间仍未完成的等待者阻塞在底层锁上，底层锁默认为BlockingCLHLock，
+ *     拿到锁时自己的操作多半已经被之前的combiner执行完毕</li>
+ *     <li>长时间没有使用的Record由combiner从链表中摘除，线程再次使用时重新加入</li>
+ * </ul>
+ * Operation中抛出的RuntimeException/Error会在调用execute的线程中重新抛出。
+ * Operation中不能再调用同一个锁的execute。
+ */
+public class FlatCombiningLock {
+
+    /**
+     * 在锁内执行的操作，由某个combiner线程调用，而不一定是调用execute的线程
+     */
+    public interface Operation<R> {
+        R run();
+    }
+
+    private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+    /**
+     * 阻塞在底层锁之前自旋等待的次数。阻塞在FIFO的底层锁上之后，即使操作已经被combiner执行，
+     * 也要等前面的线程依次唤醒交接，因此尽量在自己的Record上等待
+     */
+    private static final int SPINS = 1 << 10;
+
+    /**
+     * 自旋时每这么多次让出一次CPU，线程数超过核数时combiner可能正等待被调度；单核上每次都让出
+     */
+    private static final int YIELD_MASK = MULTIPROCESSOR ? 0x3f : 0;
+
+    /**
+     * 自旋时每这么多次尝试一次底层锁，其余时间只读自己的Record。
+     * 单核上没有跨核的cache line争用，而且每次自旋都会让出CPU，因此每次都尝试
+     */
+    private static final int TRY_LOCK_MASK = MULTIPROCESSOR ? 0x3f : 0;
+
+    /**
+     * 每次combine最多遍历发布链表的次数，后面几遍用于收集遍历期间新发布的操作
+     */
+    private static final int MAX_PASSES = 3;
+
+    /**
+     * 每combine这么多次清理一次发布链表
+     */
+    private static final int CLEANUP_INTERVAL = 64;
+
+    /**
+     * 超过这么多次combine没有使用的Record会被摘除
+     */
+    private static final int CLEANUP_AGE = 1024;
+
+    private final Lock lock;
+
+    /**
+     * 发布链表的头部，只通过CAS在头部插入；摘除只由combiner在持有锁时进行，并且不摘除头节点
+     */
+    private final AtomicReference<Record> head = new AtomicReference<>();
+
+    private final ThreadLocal<Record> current = new ThreadLocal<Record>() {
+        @Override
+        protected Record initialValue() {
+            return new Record();
+        }
+    };
+
+    /**
+     * 正在combine的线程，用于拒绝Operation中嵌套调用execute
+     */
+    private volatile Thread combiner;
+
+    /**
+     * combine的次数，只在持有锁时修改
+     */
+    private int combineCount;
+
+    public FlatCombiningLock() {
+        this(new BlockingCLHLock());
+    }
+
+    /**
+     * 底层锁必须实现Lock并支持tryLock()。包内没有实现Lock的自旋锁（CLHLock、MCSLock、CohortLock、AbortableCLHLock）
+     * 需要先通过LockAdapters.of(...)转换，例如new FlatCombiningLock(LockAdapters.of(new MCSLock()))
+     *
+     * @param lock 底层锁，不能被其他代码直接使用，否则持有锁的一方不会执行挂起的操作
+     */
+    public FlatCombiningLock(Lock lock) {
+        if(lock == null) {
+            throw new IllegalArgumentException("lock is null");
+        }
+        this.lock = lock;
+    }
+
+    /**
+     * 在锁内执行operation并返回其结果
+     */
+    public <R> R execute(Operation<R> operation) {
+        if(operation == null) {
+            throw new IllegalArgumentException("operation is null");
+        }
+        if(combiner == Thread.currentThread()) {
+            throw new IllegalStateException("nested execute in operation");
+        }
+        Record record = current.get();
+        record.operation = operation;
+        publish(record);
+        for(int i = 0; record.operation != null; i++) {
+            if((i & TRY_LOCK_MASK) == 0 && lock.tryLock()) {
+                combine(record);
+            } else if(i >= SPINS) {
+                lock.lock();
+                combine(record);
+            } else if(!record.active) {
+                //被combiner摘除了，重新加入发布链表
+                publish(record);
+            } else if((i & YIELD_MASK) == YIELD_MASK) {
+                Thread.yield();
+            }
+        }
+        return record.take();
+    }
+
+    private void publish(Record record) {
+        if(record.active) {
+            return;
+        }
+        record.active = true;
+        for(;;) {
+            Record first = head.get();
+            record.next = first;
+            if(head.compareAndSet(first, record)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 持有锁时调用，执行所有挂起的操作，最后释放锁
+     */
+    private void combine(Record own) {
+        combiner = Thread.currentThread();
+        try {
+            int count = ++combineCount;
+            for(int pass = 0; pass < MAX_PASSES; pass++) {
+                boolean found = false;
+                for(Record record = head.get(); record != null; record = record.next) {
+                    if(record.operation != null) {
+                        record.execute(count);
+                        found = true;
+                    }
+                }
+                if(!found) {
+                    break;
+                }
+            }
+            //自己的Record可能在发布之前已经被摘除，不在链表中
+            if(own.operation != null) {
+                own.execute(count);
+            }
+            if(count % CLEANUP_INTERVAL == 0) {
+                cleanup(count);
+            }
+        } finally {
+            combiner = null;
+            lock.unlock();
+        }
+    }
+
+    private void cleanup(int count) {
+        Record previous = head.get();
+        if(previous == null) {
+            return;
+        }
+        Record record = previous.next;
+        while(record != null) {
+            Record next = record.next;
+            if(record.operation == null && count - record.lastUsed > CLEANUP_AGE) {
+                //先摘除再置active为false，所有者看到active为false时才会修改next重新加入
+                previous.next = next;
+                record.active = false;
+            } else {
+                previous = record;
+            }
+            record = next;
+        }
+    }
+
+    /**
+     * @return 发布链表中的Record数
+     */
+    int publishedRecords() {
+        int size = 0;
+        for(Record record = head.get(); record != null; record = record.next) {
+            size++;
+        }
+        return size;
+    }
+
+    private static final class Record {
+
+        /**
+         * 挂起的操作，combiner执行完毕后置为null，同时发布result/failure
+         */
+        volatile Operation<?> operation;
+
+        volatile boolean active;
+
+        volatile Record next;
+
+        Object result;
+
+        Throwable failure;
+
+        /**
+         * 最后一次被执行时的combine次数，只由combiner读写
+         */
+        int lastUsed;
+
+        void execute(int count) {
+            try {
+                result = operation.run();
+            } catch(Throwable t) {
+                failure = t;
+            }
+            lastUsed = count;
+            operation = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        <R> R take() {
+            Object value = result;
+            Throwable t = failure;
+            result = null;
+            failure = null;
+            if(t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if(t instanceof Error) {
+                throw (Error) t;
+            }
+            return (R) value;
+        }
+    }
+
+    /**
+     * 对比在ReentrantLock和FlatCombiningLock下递增计数器的耗时
+     */
+    @SneakyThrows
+    public static void main(String[] args) {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        final int rounds = 200_000;
+        for(int round = 0; round < 3; round++) {
+            final long[] counter = new long[1];
+            final ReentrantLock reentrantLock = new ReentrantLock();
+            long plainNanos = run(threads, new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < rounds; i++) {
+                        reentrantLock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            reentrantLock.unlock();
+                        }
+                    }
+                }
+            });
+            final FlatCombiningLock combiningLock = new FlatCombiningLock();
+            final Operation<Long> increment = new Operation<Long>() {
+                @Override
+                public Long run() {
+                    return ++counter[0];
+                }
+            };
+            long combiningNanos = run(threads, new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < rounds; i++) {
+                        combiningLock.execute(increment);
+                    }
+                }
+            });
+            System.out.println(threads + " threads, ReentrantLock: " + TimeUnit.NANOSECONDS.toMillis(plainNanos)
+                    + "ms, FlatCombiningLock: " + TimeUnit.NANOSECONDS.toMillis(combiningNanos) + "ms, counter: " + counter[0]);
+        }
+    }
+
+    @SneakyThrows
+    private static long run(int threads, Runnable task) {
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread(task);
+        }
+        long start = System.nanoTime();
+        for(Thread worker : workers) {
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,447 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 记录锁竞争情况的包装：获取锁的等待时间、持有时间、当前排队的线程数、交接次数以及等待最久的线程。
+ * <ul>
+ *     <li>每个线程只写自己的Recorder，计数使用lazySet发布，没有任何共享的CAS；snapshot()时再汇总所有线程的数据</li>
+ *     <li>等待时间与持有时间使用以2为底的对数直方图，第i个桶记录[2^(i-1), 2^i)纳秒的样本</li>
+ *     <li>交接次数为获取锁时上一个持有者是其他线程的次数，也就是锁保护的数据在线程之间迁移的次数；
+ *     lastOwner只在持有锁时读写，包装TwinsLock这样的共享锁时只是近似值</li>
+ *     <li>未开启时lock/unlock只多一次volatile读，可以在线上常驻，需要排查时再调用setEnabled(true)；
+ *     开启后每次加锁解锁的主要开销是三次System.nanoTime()</li>
+ * </ul>
+ * 包装ReentrantLock时，重入只在最外层记录一次；通过newCondition()等待的时间计入持有时间。
+ * 没有实现Lock接口的锁可以先通过LockAdapters转换。
+ */
+public class InstrumentedLock implements Lock {
+
+    static final int BUCKETS = 64;
+
+    /**
+     * Recorder.counters中各项计数的下标，前两段分别为等待时间与持有时间的直方图
+     */
+    private static final int HOLD_OFFSET = BUCKETS;
+
+    private static final int ACQUISITIONS = 2 * BUCKETS;
+
+    private static final int HANDOFFS = ACQUISITIONS + 1;
+
+    private static final int TOTAL_WAIT = ACQUISITIONS + 2;
+
+    private static final int MAX_WAIT = ACQUISITIONS + 3;
+
+    private static final int TOTAL_HOLD = ACQUISITIONS + 4;
+
+    private static final int COUNTERS = ACQUISITIONS + 5;
+
+    private static final long NOT_WAITING = Long.MIN_VALUE;
+
+    @Getter
+    private final String name;
+
+    private final Lock delegate;
+
+    private volatile boolean enabled;
+
+    /**
+     * 每次开启时加1，用于丢弃关闭之前遗留的重入深度
+     */
+    private volatile int epoch;
+
+    /**
+     * 各线程的Recorder。新线程加入时不复制已有的元素；已经结束的线程在新线程加入以及snapshot()时移除，
+     * 线程不断新建销毁的线程池中，recorders的大小不超过同时存活的线程数加上最近结束的那些
+     */
+    private final ConcurrentLinkedQueue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已经结束的线程的数据，移除Recorder时合并进来，只在持有retired的监视器时读写
+     */
+    private final long[] retired = new long[COUNTERS];
+
+    private final ThreadLocal<Recorder> current = new ThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            retireDeadRecorders();
+            Recorder recorder = new Recorder(Thread.currentThread());
+            recorders.add(recorder);
+            return recorder;
+        }
+    };
+
+    /**
+     * 上一个拿到锁的线程，只在持有锁时读写
+     */
+    private Thread lastOwner;
+
+    public InstrumentedLock(String name, Lock delegate) {
+        this(name, delegate, true);
+    }
+
+    public InstrumentedLock(String name, Lock delegate, boolean enabled) {
+        if(delegate == null) {
+            throw new IllegalArgumentException("delegate lock must be not null!");
+        }
+        this.name = name;
+        this.delegate = delegate;
+        setEnabled(enabled);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开启或关闭记录，已经记录的数据保留。切换时正在持有锁的线程，这一次的持有时间不会被记录
+     */
+    public void setEnabled(boolean enabled) {
+        if(enabled && !this.enabled) {
+            epoch++;
+        }
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void lock() {
+        if(!enabled) {
+            delegate.lock();
+            return;
+        }
+        Recorder recorder = current.get();
+        long start = recorder.beginWait();
+        try {
+            delegate.lock();
+        } finally {
+            recorder.endWait();
+        }
+        acquired(recorder, start);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if(!enabled) {
+            delegate.lockInterruptibly();
+            return;
+        }
+        Recorder recorder = current.get();
+        long start = recorder.beginWait();
+        try {
+            delegate.lockInterruptibly();
+        } finally {
+            recorder.endWait();
+        }
+        acquired(recorder, start);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if(!enabled) {
+            return delegate.tryLock();
+        }
+        if(!delegate.tryLock()) {
+            return false;
+        }
+        acquired(current.get(), System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if(!enabled) {
+            return delegate.tryLock(time, unit);
+        }
+        Recorder recorder = current.get();
+        long start = recorder.beginWait();
+        boolean locked;
+        try {
+            locked = delegate.tryLock(time, unit);
+        } finally {
+            recorder.endWait();
+        }
+        if(locked) {
+            acquired(recorder, start);
+        }
+        return locked;
+    }
+
+    private void acquired(Recorder recorder, long start) {
+        long now = System.nanoTime();
+        Thread thread = recorder.thread;
+        if(recorder.epoch != epoch) {
+            recorder.epoch = epoch;
+            recorder.depth = 0;
+        }
+        if(recorder.depth++ > 0) {
+            //重入，只在最外层记录
+            return;
+        }
+        recorder.acquiredAt = now;
+        long wait = now - start;
+        recorder.add(bucketOf(wait));
+        recorder.add(ACQUISITIONS);
+        recorder.add(TOTAL_WAIT, wait);
+        if(wait > recorder.counters.get(MAX_WAIT)) {
+            recorder.counters.lazySet(MAX_WAIT, wait);
+        }
+        if(lastOwner != thread) {
+            if(lastOwner != null) {
+                recorder.add(HANDOFFS);
+            }
+            lastOwner = thread;
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if(enabled) {
+            Recorder recorder = current.get();
+            if(recorder.epoch == epoch && recorder.depth > 0 && --recorder.depth == 0) {
+                long hold = System.nanoTime() - recorder.acquiredAt;
+                recorder.add(HOLD_OFFSET + bucketOf(hold));
+                recorder.add(TOTAL_HOLD, hold);
+            }
+        }
+        delegate.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return delegate.newCondition();
+    }
+
+    static int bucketOf(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * 把已经结束的线程的计数合并到retired并移除它们的Recorder，计数不会再变化
+     */
+    private void retireDeadRecorders() {
+        synchronized(retired) {
+            Iterator<Recorder> iterator = recorders.iterator();
+            while(iterator.hasNext()) {
+                Recorder recorder = iterator.next();
+                if(!recorder.thread.isAlive()) {
+                    recorder.addTo(retired);
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 当前登记的Recorder数
+     */
+    int registeredRecorders() {
+        return recorders.size();
+    }
+
+    /**
+     * 汇总所有线程的数据，不会阻塞使用锁的线程。各线程的计数分别读取，彼此之间不保证是同一时刻的值
+     */
+    public Snapshot snapshot() {
+        long[] totals = new long[COUNTERS];
+        int queueDepth = 0;
+        Thread longestWaiter = null;
+        long longestWaitStart = 0L;
+        synchronized(retired) {
+            Iterator<Recorder> iterator = recorders.iterator();
+            while(iterator.hasNext()) {
+                Recorder recorder = iterator.next();
+                //先判断线程是否结束再读取计数：结束之前的写入对isAlive()返回false之后的读取可见
+                boolean dead = !recorder.thread.isAlive();
+                long since = recorder.waitingSince.get();
+                if(since != NOT_WAITING) {
+                    queueDepth++;
+                    if(longestWaiter == null || since - longestWaitStart < 0) {
+                        longestWaiter = recorder.thread;
+                        longestWaitStart = since;
+                    }
+                }
+                if(dead) {
+                    recorder.addTo(retired);
+                    iterator.remove();
+                } else {
+                    recorder.addTo(totals);
+                }
+            }
+            for(int i = 0; i < COUNTERS; i++) {
+                totals[i] = i == MAX_WAIT ? Math.max(totals[i], retired[i]) : totals[i] + retired[i];
+            }
+        }
+        long longestWait = longestWaiter == null ? 0L : Math.max(0L, System.nanoTime() - longestWaitStart);
+        return new Snapshot(name, totals, queueDepth,
+                longestWaiter == null ? null : longestWaiter.getName(), longestWait);
+    }
+
+    /**
+     * 每个线程在每个锁上一个，只由所属线程写入
+     */
+    private static final class Recorder {
+
+        final Thread thread;
+
+        final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+
+        /**
+         * 开始等待锁的时间，没有等待时为NOT_WAITING；使用lazySet写入，不需要volatile写的StoreLoad屏障
+         */
+        final AtomicLong waitingSince = new AtomicLong(NOT_WAITING);
+
+        int depth;
+
+        int epoch;
+
+        long acquiredAt;
+
+        Recorder(Thread thread) {
+            this.thread = thread;
+        }
+
+        long beginWait() {
+            long start = System.nanoTime();
+            waitingSince.lazySet(start == NOT_WAITING ? start + 1 : start);
+            return start;
+        }
+
+        void endWait() {
+            waitingSince.lazySet(NOT_WAITING);
+        }
+
+        void add(int index) {
+            counters.lazySet(index, counters.get(index) + 1);
+        }
+
+        void add(int index, long value) {
+            counters.lazySet(index, counters.get(index) + value);
+        }
+
+        void addTo(long[] totals) {
+            for(int i = 0; i < COUNTERS; i++) {
+                if(i == MAX_WAIT) {
+                    totals[i] = Math.max(totals[i], counters.get(i));
+                } else {
+                    totals[i] += counters.get(i);
+                }
+            }
+        }
+    }
+
+    @Getter
+    public static final class Snapshot {
+
+        private final String name;
+
+        /**
+         * 获取锁的次数，重入不计入
+         */
+        private final long acquisitions;
+
+        /**
+         * 获取锁时上一个持有者是其他线程的次数
+         */
+        private final long handoffs;
+
+        private final long totalWaitNanos;
+
+        private final long maxWaitNanos;
+
+        private final long totalHoldNanos;
+
+        /**
+         * 等待时间的直方图，第i个元素为[2^(i-1), 2^i)纳秒的样本数，第0个元素为0纳秒
+         */
+        private final long[] waitHistogram;
+
+        private final long[] holdHistogram;
+
+        /**
+         * 读取时正在等待锁的线程数
+         */
+        private final int queueDepth;
+
+        /**
+         * 读取时等待最久的线程名，没有线程等待时为null
+         */
+        private final String longestWaiter;
+
+        private final long longestWaitNanos;
+
+        private Snapshot(String name, long[] totals, int queueDepth, String longestWaiter, long longestWaitNanos) {
+            this.name = name;
+            this.acquisitions = totals[ACQUISITIONS];
+            this.handoffs = totals[HANDOFFS];
+            this.totalWaitNanos = totals[TOTAL_WAIT];
+            this.maxWaitNanos = totals[MAX_WAIT];
+            this.totalHoldNanos = totals[TOTAL_HOLD];
+            this.waitHistogram = new long[BUCKETS];
+            this.holdHistogram = new long[BUCKETS];
+            System.arraycopy(totals, 0, waitHistogram, 0, BUCKETS);
+            System.arraycopy(totals, HOLD_OFFSET, holdHistogram, 0, BUCKETS);
+            this.queueDepth = queueDepth;
+            this.longestWaiter = longestWaiter;
+            this.longestWaitNanos = longestWaitNanos;
+        }
+
+        public long[] getWaitHistogram() {
+            return waitHistogram.clone();
+        }
+
+        public long[] getHoldHistogram() {
+            return holdHistogram.clone();
+        }
+
+        /**
+         * @param quantile 0到1之间的分位数
+         * @return 等待时间分位数所在桶的上界（纳秒），没有样本时为0
+         */
+        public long waitPercentile(double quantile) {
+            return percentile(waitHistogram, quantile);
+        }
+
+        public long holdPercentile(double quantile) {
+            return percentile(holdHistogram, quantile);
+        }
+
+        private static long percentile(long[] histogram, double quantile) {
+            if(quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("illegal quantile: " + quantile);
+            }
+            long total = 0;
+            for(long count : histogram) {
+                total += count;
+            }
+            if(total == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for(int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if(seen >= rank) {
+                    return i == 0 ? 0L : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{acquisitions=" + acquisitions + ", handoffs=" + handoffs
+                    + ", waitP50=" + waitPercentile(0.5) + "ns, waitP99=" + waitPercentile(0.99)
+                    + "ns, maxWait=" + maxWaitNanos + "ns, holdP50=" + holdPercentile(0.5)
+                    + "ns, holdP99=" + holdPercentile(0.99) + "ns, queueDepth=" + queueDepth
+                    + ", longestWaiter=" + longestWaiter + "(" + longestWaitNanos + "ns)}";
+        }
+    }
+}
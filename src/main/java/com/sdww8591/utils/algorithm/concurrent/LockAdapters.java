@@ -0,0 +1,173 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 把没有实现Lock接口的锁转换为Lock，便于用InstrumentedLock、FlatCombiningLock包装或者替换已有的ReentrantLock。
+ * tryLock()直接使用底层锁不排队的尝试路径；底层锁没有超时版本时，tryLock(time, unit)在截止时间之前反复调用tryLock()，
+ * 不进入队列，因此不保证公平。自旋锁没有条件队列，newCondition()均抛出UnsupportedOperationException。
+ */
+public final class LockAdapters {
+
+    private LockAdapters() {
+    }
+
+    /**
+     * lock()期间不响应中断，lockInterruptibly()只在开始等待之前检查中断标记
+     */
+    public static Lock of(final CLHLock lock) {
+        return new AbstractAdapter() {
+            @Override
+            public void lock() {
+                lock.lock();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return lock.tryLock();
+            }
+
+            @Override
+            public void unlock() {
+                lock.release();
+            }
+        };
+    }
+
+    public static Lock of(final MCSLock lock) {
+        return new AbstractAdapter() {
+            @Override
+            public void lock() {
+                lock.lock();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return lock.tryLock();
+            }
+
+            @Override
+            public void unlock() {
+                lock.release();
+            }
+        };
+    }
+
+    public static Lock of(final CohortLock lock) {
+        return new AbstractAdapter() {
+            @Override
+            public void lock() {
+                lock.lock();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return lock.tryLock();
+            }
+
+            @Override
+            public void unlock() {
+                lock.release();
+            }
+        };
+    }
+
+    public static Lock of(final AbortableCLHLock lock) {
+        return new AbstractAdapter() {
+            @Override
+            public void lock() {
+                lock.lock();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return lock.tryLock();
+            }
+
+            @Override
+            public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                return lock.tryLock(time, unit);
+            }
+
+            @Override
+            public void unlock() {
+                lock.release();
+            }
+        };
+    }
+
+    /**
+     * 每次lock()占用TwinsLock的一个许可
+     */
+    public static Lock of(final TwinsLock lock) {
+        return new AbstractAdapter() {
+            @Override
+            public void lock() {
+                lock.lock();
+            }
+
+            @Override
+            public void lockInterruptibly() throws InterruptedException {
+                lock.lockInterruptibly();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return lock.tryLock();
+            }
+
+            @Override
+            public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+                return lock.tryLock(time, unit);
+            }
+
+            @Override
+            public void unlock() {
+                lock.unlock();
+            }
+        };
+    }
+
+    private abstract static class AbstractAdapter implements Lock {
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            lock();
+        }
+
+        /**
+         * 轮询tryLock()直到成功或超时，time不大于0时只尝试一次
+         */
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(time);
+            for(int spins = 0; ; spins++) {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if(tryLock()) {
+                    return true;
+                }
+                if(deadline - System.nanoTime() <= 0) {
+                    return false;
+                }
+                if((spins & MCSLock.YIELD_MASK) == MCSLock.YIELD_MASK) {
+                    Thread.yield();
+                }
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
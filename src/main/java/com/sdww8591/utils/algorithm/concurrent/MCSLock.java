@@ -0,0 +1,116 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import lombok.SneakyThrows;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MCS(Mellor-Crummey and Scott) lock：与CLHLock一样是基于队列的公平自旋锁，
+ * 区别在于每个线程自旋在自己节点的locked字段上，由前驱在释放锁时修改，而不是轮询前驱的节点。
+ * 在NUMA机器上自己的节点通常位于本地内存，等待期间不会产生跨socket的cache line流量，只有交接时才有一次远程写。
+ * 代价是释放锁时需要等待后继把自己链接到next上。
+ * 空间复杂度与CLHLock相同，每个线程持有一个可重复使用的Node对象。该锁不可重入。
+ */
+public class MCSLock {
+
+    /**
+     * 单核或线程数超过核数时，持有锁的线程可能正等待被调度，每自旋这么多次让出一次CPU
+     */
+    static final int YIELD_MASK = 0x3ff;
+
+    private final AtomicReference<Node> tail = new AtomicReference<>();
+
+    private final ThreadLocal<Node> current = new ThreadLocal<Node>() {
+        @Override
+        protected Node initialValue() {
+            return new Node();
+        }
+    };
+
+    public void lock() {
+        Node currentNode = current.get();
+        currentNode.next = null;
+        Node predecessor = tail.getAndSet(currentNode);
+        if(predecessor == null) {
+            return;
+        }
+        //先置locked再链接到前驱上，前驱看到next时locked一定已经为true
+        currentNode.locked = true;
+        predecessor.next = currentNode;
+        int spins = 0;
+        while(currentNode.locked) {
+            if((++spins & YIELD_MASK) == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 只有锁空闲（队列为空）时才能成功，不会排队；先读再CAS，锁被占用时只读不写
+     */
+    public boolean tryLock() {
+        if(tail.get() != null) {
+            return false;
+        }
+        Node currentNode = current.get();
+        currentNode.next = null;
+        return tail.compareAndSet(null, currentNode);
+    }
+
+    public void release() {
+        Node currentNode = current.get();
+        Node successor = currentNode.next;
+        if(successor == null) {
+            if(tail.compareAndSet(currentNode, null)) {
+                return;
+            }
+            //后继已经修改了tail，但还没有来得及设置next
+            int spins = 0;
+            while((successor = currentNode.next) == null) {
+                if((++spins & YIELD_MASK) == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+        currentNode.next = null;
+        successor.locked = false;
+    }
+
+    /**
+     * @return 是否有线程正在排队等待，只应由持有锁的线程调用
+     */
+    public boolean hasQueuedThreads() {
+        Node currentNode = current.get();
+        return currentNode.next != null || tail.get() != currentNode;
+    }
+
+    static final class Node {
+
+        /**
+         * true表示正在等待前驱释放锁
+         */
+        volatile boolean locked;
+
+        volatile Node next;
+    }
+
+    public static void main(String[] args) {
+        final MCSLock mcsLock = new MCSLock();
+        for(int i = 0; i < 3; i++) {
+            final int j = i;
+            new Thread(new Runnable() {
+                @Override
+                @SneakyThrows
+                public void run() {
+                    System.out.println("thread-" + j + " started!");
+                    mcsLock.lock();
+                    System.out.println("thread-" + j + " get lock!");
+                    TimeUnit.SECONDS.sleep(2);
+                    System.out.println("thread-" + j + " release lock!");
+                    mcsLock.release();
+                }
+            }).start();
+        }
+    }
+}
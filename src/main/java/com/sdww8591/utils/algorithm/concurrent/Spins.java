@@ -0,0 +1,26 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+/**
+ * 自旋等待的策略。Java 21及以上版本使用src/main/java21中的同名类（multi-release jar），
+ * 虚拟线程不自旋，避免占住carrier线程。
+ */
+final class Spins {
+
+    private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+    private Spins() {
+    }
+
+    /**
+     * @return 当前线程在park之前是否值得自旋等待，单核上自旋没有意义
+     */
+    static boolean spinAllowed() {
+        return MULTIPROCESSOR;
+    }
+
+    /**
+     * 自旋循环中每次轮询之后调用，Java 7没有Thread.onSpinWait，什么也不做
+     */
+    static void onSpinWait() {
+    }
+}
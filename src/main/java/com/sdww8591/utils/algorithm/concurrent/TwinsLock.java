@@ -5,60 +5,180 @@ import lombok.SneakyThrows;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
+/**
+ * 最多允许N个线程同时持有的共享锁，常用于限制对下游连接池之类资源的并发数，默认N为2。
+ * <ul>
+ *     <li>state为剩余的许可数，获取与释放都只是一次CAS；非公平模式下lock先直接CAS，没有竞争时不进入AQS的排队逻辑</li>
+ *     <li>公平模式下只要有线程在排队，新来的线程就必须排在后面</li>
+ *     <li>每个线程持有的许可数记录在线程私有的int[]中，只在线程第一次使用时分配，用于保证调用unlock的线程确实持有许可</li>
+ * </ul>
+ * 同一个线程可以多次lock，每次占用一个许可，需要相同次数的unlock。
+ */
 public class TwinsLock {
 
-    private Sync sync = new Sync();
+    private static final int DEFAULT_PERMITS = 2;
 
-    private class Sync extends AbstractQueuedSynchronizer {
+    private final Sync sync;
 
-        private Sync() {
-            setState(2);
+    private final int permits;
+
+    /**
+     * 用于保证调用unlock()的线程曾经调用过lock()，holdCount.get()[0]为当前线程持有的许可数
+     */
+    private final ThreadLocal<int[]> holdCount = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
         }
+    };
 
-        //用于保证调用release()方法的线程曾经调用过lock()
-        ThreadLocal<Integer> threadLocalHolder = new ThreadLocal<Integer>() {
-            protected Integer initialValue() {
-                return 0;
-            }
-        };
+    public TwinsLock() {
+        this(DEFAULT_PERMITS, false);
+    }
+
+    public TwinsLock(int permits) {
+        this(permits, false);
+    }
+
+    /**
+     * @param permits 最多同时持有锁的线程数
+     * @param fair 是否按照到达顺序获取许可
+     */
+    public TwinsLock(int permits, boolean fair) {
+        if(permits < 1) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        this.permits = permits;
+        this.sync = new Sync(permits, fair);
+    }
+
+    private static final class Sync extends AbstractQueuedSynchronizer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean fair;
 
+        private Sync(int permits, boolean fair) {
+            this.fair = fair;
+            setState(permits);
+        }
+
+        /**
+         * @return 获取之后剩余的许可数，小于0表示获取失败且没有修改state
+         */
         @Override
         protected int tryAcquireShared(int arg) {
-            for (;;) {
-                int currentStatus = getState();
-                int targetStatus = currentStatus - arg;
-                if(targetStatus < 0
-                        || compareAndSetState(currentStatus, targetStatus)) {
-                    threadLocalHolder.set(threadLocalHolder.get() + arg);
-                    return targetStatus;
+            for(;;) {
+                if(fair && hasQueuedPredecessors()) {
+                    return -1;
+                }
+                int current = getState();
+                int target = current - arg;
+                if(target < 0 || compareAndSetState(current, target)) {
+                    return target;
+                }
+            }
+        }
+
+        /**
+         * 无竞争时的快速路径，只尝试一次CAS，失败后由调用方进入AQS
+         */
+        private boolean tryAcquireFast() {
+            int current = getState();
+            return current > 0 && (!fair || !hasQueuedThreads()) && compareAndSetState(current, current - 1);
+        }
+
+        private boolean tryAcquireBarging() {
+            for(;;) {
+                int current = getState();
+                if(current <= 0) {
+                    return false;
+                }
+                if(compareAndSetState(current, current - 1)) {
+                    return true;
                 }
             }
         }
 
         @Override
         protected boolean tryReleaseShared(int arg) {
-           if(threadLocalHolder.get() - arg < 0) {
-               throw new IllegalMonitorStateException();
-           }
-           for(;;) {
-               int current = getState();
-               int targetStatus = current + arg;
-               if(compareAndSetState(current, targetStatus)) {
-                   threadLocalHolder.set(threadLocalHolder.get() - arg);
-                   return true;
-               }
-           }
+            for(;;) {
+                int current = getState();
+                if(compareAndSetState(current, current + arg)) {
+                    return true;
+                }
+            }
+        }
+
+        private int availablePermits() {
+            return getState();
         }
     }
 
     public void lock() {
-        sync.acquireShared(1);
+        if(!sync.tryAcquireFast()) {
+            sync.acquireShared(1);
+        }
+        holdCount.get()[0]++;
+    }
+
+    public void lockInterruptibly() throws InterruptedException {
+        if(!sync.tryAcquireFast()) {
+            sync.acquireSharedInterruptibly(1);
+        }
+        holdCount.get()[0]++;
+    }
+
+    /**
+     * 立即尝试获取许可，不排队；公平模式下同样不考虑排队中的线程
+     */
+    public boolean tryLock() {
+        if(sync.tryAcquireBarging()) {
+            holdCount.get()[0]++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if(sync.tryAcquireFast() || sync.tryAcquireSharedNanos(1, unit.toNanos(time))) {
+            holdCount.get()[0]++;
+            return true;
+        }
+        return false;
     }
 
     public void unlock() {
+        int[] count = holdCount.get();
+        if(count[0] <= 0) {
+            throw new IllegalMonitorStateException();
+        }
+        count[0]--;
         sync.releaseShared(1);
     }
 
+    /**
+     * @return 当前剩余的许可数
+     */
+    public int availablePermits() {
+        return sync.availablePermits();
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @return 当前线程持有的许可数
+     */
+    public int getHoldCount() {
+        return holdCount.get()[0];
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
     @SneakyThrows
     public static void main(String[] args) {
         final TwinsLock lock = new TwinsLock();
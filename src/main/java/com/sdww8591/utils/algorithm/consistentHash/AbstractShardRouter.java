@@ -0,0 +1,82 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.HashFunction;
+import com.sdww8591.utils.third.HashFunctions;
+import com.sdww8591.utils.third.MurmurHash;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 节点集合不可变的路由器的公共部分：key使用构造时指定的HashFunction（默认MurmurHash64A）计算hash值，节点变化时需要重新构建路由器。
+ * @param <T>
+ */
+public abstract class AbstractShardRouter<T> implements ShardRouter<T> {
+
+    protected final Object[] nodes;
+
+    private final List<T> nodeList;
+
+    private final HashFunction hashFunction;
+
+    protected AbstractShardRouter(Collection<T> objects) {
+        this(objects, HashFunctions.murmur64A());
+    }
+
+    /**
+     * @param objects 节点
+     * @param hashFunction 计算key的hash值使用的算法，节点自身的位置始终使用MurmurHash计算
+     */
+    protected AbstractShardRouter(Collection<T> objects, HashFunction hashFunction) {
+        if(objects == null || objects.isEmpty()) {
+            throw new IllegalArgumentException("target collection must be not empty!");
+        }
+        if(hashFunction == null) {
+            throw new IllegalArgumentException("hash function must be not null!");
+        }
+        this.hashFunction = hashFunction;
+        this.nodeList = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(objects)));
+        this.nodes = nodeList.toArray();
+    }
+
+    @Override
+    public T getShard(String key) {
+        return getShardByHash(hashFunction.hash(key));
+    }
+
+    @Override
+    public T getShard(long key) {
+        return getShardByHash(hashFunction.hash(key));
+    }
+
+    @Override
+    public T getShard(byte[] key, int offset, int length) {
+        return getShardByHash(hashFunction.hash(key, offset, length));
+    }
+
+    @Override
+    public T getShard(ByteBuffer key) {
+        return getShardByHash(hashFunction.hash(key));
+    }
+
+    @Override
+    public List<T> getNodes() {
+        return nodeList;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T node(int index) {
+        return (T) nodes[index];
+    }
+
+    /**
+     * 由节点标识计算hash值，与HashPlacement一样使用String.valueOf(node)作为标识，保证所有JVM的结果一致
+     */
+    protected static long identityHash(Object node, String salt) {
+        return MurmurHash.hash(String.valueOf(node) + "#" + salt);
+    }
+}
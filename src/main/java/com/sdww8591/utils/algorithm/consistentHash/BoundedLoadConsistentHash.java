@@ -0,0 +1,146 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Consistent Hashing with Bounded Loads（Mirrokni, Thorup, Zadimoghaddam）。
+ * 每个节点的负载上限为 ceil((1 + epsilon) * 当前总负载 * 节点权重 / 总权重)，
+ * 路由时若key命中的节点已达到上限，则沿环顺时针寻找下一个未超限的节点。
+ * 负载指的是正在处理中的请求数，因此每次acquire之后都必须在请求结束时调用release。
+ * 节点负载使用StripedCounter记录，判断负载时不会引入新的争用点。
+ * @param <T>
+ */
+public class BoundedLoadConsistentHash<T> {
+
+    private final ConsistentHash<T> consistentHash;
+
+    private final double epsilon;
+
+    private final ConcurrentMap<T, StripedCounter> loads = new ConcurrentHashMap<>();
+
+    private final StripedCounter totalLoad = new StripedCounter();
+
+    /**
+     * 与当前hash环对应的负载计数器及负载份额，hash环变化后重新构建
+     */
+    private volatile LoadView view;
+
+    /**
+     * @param consistentHash 底层的一致性hash环，可以继续在其上增删节点
+     * @param epsilon 允许节点超出平均负载的比例，越小负载越均衡，但key的漂移越多
+     */
+    public BoundedLoadConsistentHash(ConsistentHash<T> consistentHash, double epsilon) {
+        if(consistentHash == null) {
+            throw new IllegalArgumentException("consistent hash must be not null!");
+        }
+        if(!(epsilon > 0)) {
+            throw new IllegalArgumentException("epsilon must be positive: " + epsilon);
+        }
+        this.consistentHash = consistentHash;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * 为key选择一个未超出负载上限的节点，并将该节点的负载加1
+     */
+    public T acquire(String key) {
+        return acquire(consistentHash.getHashFunction().hash(key));
+    }
+
+    private T acquire(long hash) {
+        LoadView current = view();
+        HashRing<T> ring = current.ring;
+        long balls = totalLoad.sum() + 1;
+        int position = ring.positionOf(hash);
+        for(int i = 0; i < ring.size(); i++) {
+            int owner = ring.ownerAt(position);
+            StripedCounter load = current.loads[owner];
+            if(load.sum() < Math.ceil(current.shares[owner] * balls)) {
+                load.increment();
+                totalLoad.increment();
+                return ring.node(owner);
+            }
+            if(++position == ring.size()) {
+                position = 0;
+            }
+        }
+        //并发acquire时所有节点可能恰好同时达到上限，此时退化为普通的一致性hash
+        int owner = ring.ownerAt(ring.positionOf(hash));
+        current.loads[owner].increment();
+        totalLoad.increment();
+        return ring.node(owner);
+    }
+
+    /**
+     * 请求结束时释放acquire返回的节点上的负载
+     */
+    public void release(T node) {
+        StripedCounter load = loads.get(node);
+        if(load == null) {
+            throw new IllegalArgumentException("node has never been acquired: " + node);
+        }
+        load.decrement();
+        totalLoad.decrement();
+    }
+
+    /**
+     * @return 节点当前正在处理中的请求数
+     */
+    public long getLoad(T node) {
+        StripedCounter load = loads.get(node);
+        return load == null ? 0 : load.sum();
+    }
+
+    private LoadView view() {
+        HashRing<T> ring = consistentHash.ring();
+        LoadView current = view;
+        if(current == null || current.ring != ring) {
+            current = new LoadView(ring);
+            view = current;
+        }
+        return current;
+    }
+
+    /**
+     * 节点被移除后其计数器仍然保留在loads中，保证移除前acquire的请求可以正常release
+     */
+    private StripedCounter loadOf(T node) {
+        StripedCounter load = loads.get(node);
+        if(load == null) {
+            StripedCounter created = new StripedCounter();
+            load = loads.putIfAbsent(node, created);
+            if(load == null) {
+                load = created;
+            }
+        }
+        return load;
+    }
+
+    private final class LoadView {
+
+        private final HashRing<T> ring;
+
+        private final StripedCounter[] loads;
+
+        /**
+         * shares[i] = (1 + epsilon) * weight(i) / totalWeight
+         */
+        private final double[] shares;
+
+        private LoadView(HashRing<T> ring) {
+            this.ring = ring;
+            this.loads = new StripedCounter[ring.nodeCount()];
+            this.shares = new double[ring.nodeCount()];
+            double totalWeight = 0;
+            for(int i = 0; i < ring.nodeCount(); i++) {
+                loads[i] = loadOf(ring.node(i));
+                shares[i] = consistentHash.getWeight(ring.node(i));
+                totalWeight += shares[i];
+            }
+            for(int i = 0; i < shares.length; i++) {
+                shares[i] = (1 + epsilon) * shares[i] / totalWeight;
+            }
+        }
+    }
+}
@@ -1,31 +1,116 @@
 package com.sdww8591.utils.algorithm.consistentHash;
 
-import com.sdww8591.utils.third.MurmurHash;
+import com.sdww8591.utils.third.HashFunction;
+import com.sdww8591.utils.third.HashFunctions;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by wangxuan on 2017/5/25.
  */
-public class ConsistentHash <T> {
+public class ConsistentHash <T> implements ShardRouter<T> {
 
     private final int virtualNodeCount;
 
     private static final int DEFAULT_VIRTUAL_NODE = 128;
 
-    private static final Random randSeed = new Random(System.currentTimeMillis());
+    private static final double DEFAULT_WEIGHT = 1.0;
 
-    private TreeMap<Long, T> hashRing = new TreeMap<>();
+    private final NodePlacement<T> placement;
 
-    public ConsistentHash(int virtualNodeCount, Collection<T> objects) {
+    /**
+     * 计算key的hash值使用的算法，虚拟节点的位置由placement决定，与之无关
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * 节点权重，节点的虚拟节点个数为 virtualNodeCount * weight
+     */
+    private final ConcurrentMap<T, Double> weights = new ConcurrentHashMap<>();
+
+    /**
+     * 查找使用的紧凑hash环。HashRing本身不可变，增删节点时构建新环再整体替换，
+     * 读线程无需加锁，总是看到某一个完整的环
+     */
+    private volatile HashRing<T> hashRing;
+
+    /**
+     * 为null时表示未开启统计，此时getShard只多一次volatile读
+     */
+    private volatile ShardTelemetry<T> telemetry;
 
-        if(objects == null || objects.isEmpty()) {
+    /**
+     * @param virtualNodeCount 每个节点的虚拟节点个数
+     * @param objects 初始节点
+     * @param placement 虚拟节点放置策略，需要多个进程得到相同的环时使用HashPlacement
+     */
+    public ConsistentHash(int virtualNodeCount, Collection<T> objects, NodePlacement<T> placement) {
+
+        this(virtualNodeCount, uniformWeights(objects), placement);
+    }
+
+    /**
+     * @param virtualNodeCount 每个节点的虚拟节点个数
+     * @param objects 初始节点
+     * @param placement 虚拟节点放置策略
+     * @param hashFunction 计算key的hash值使用的算法，多个进程之间需要保持一致
+     */
+    public ConsistentHash(int virtualNodeCount, Collection<T> objects, NodePlacement<T> placement,
+                          HashFunction hashFunction) {
+
+        this(virtualNodeCount, uniformWeights(objects), placement, hashFunction);
+    }
+
+    /**
+     * 带权重的一致性hash，适用于机器配置不一致的集群
+     * @param virtualNodeCount 权重为1.0的节点所拥有的虚拟节点个数
+     * @param weightedObjects 初始节点及其权重，权重必须大于0
+     * @param placement 虚拟节点放置策略
+     */
+    public ConsistentHash(int virtualNodeCount, Map<T, Double> weightedObjects, NodePlacement<T> placement) {
+
+        this(virtualNodeCount, weightedObjects, placement, HashFunctions.murmur64A());
+    }
+
+    /**
+     * @param virtualNodeCount 权重为1.0的节点所拥有的虚拟节点个数
+     * @param weightedObjects 初始节点及其权重，权重必须大于0
+     * @param placement 虚拟节点放置策略
+     * @param hashFunction 计算key的hash值使用的算法，多个进程之间需要保持一致
+     */
+    public ConsistentHash(int virtualNodeCount, Map<T, Double> weightedObjects, NodePlacement<T> placement,
+                          HashFunction hashFunction) {
+
+        if(weightedObjects == null || weightedObjects.isEmpty()) {
 
             throw new IllegalArgumentException("target collection must be not empty!");
         }
+        if(placement == null) {
+
+            throw new IllegalArgumentException("placement must be not null!");
+        }
+        if(hashFunction == null) {
+
+            throw new IllegalArgumentException("hash function must be not null!");
+        }
         this.virtualNodeCount = virtualNodeCount;
-        init(objects);
+        this.placement = placement;
+        this.hashFunction = hashFunction;
+        for(Map.Entry<T, Double> entry : weightedObjects.entrySet()) {
+
+            checkWeight(entry.getValue());
+            weights.put(entry.getKey(), entry.getValue());
+        }
+        this.hashRing = init(weightedObjects.keySet());
+    }
+
+    public ConsistentHash(int virtualNodeCount, Collection<T> objects) {
+
+        this(virtualNodeCount, objects, new RandomPlacement<T>());
     }
 
     public ConsistentHash(Collection<T> objects) {
@@ -33,24 +118,262 @@ public class ConsistentHash <T> {
         this(DEFAULT_VIRTUAL_NODE, objects);
     }
 
-    private void init(Collection<T> objects) {
+    private static <T> Map<T, Double> uniformWeights(Collection<T> objects) {
 
+        if(objects == null) {
+
+            return null;
+        }
+        Map<T, Double> weightedObjects = new LinkedHashMap<>();
         for(T t : objects) {
 
-            for(int i = 0; i < virtualNodeCount; i++) {
+            weightedObjects.put(t, DEFAULT_WEIGHT);
+        }
+        return weightedObjects;
+    }
 
-                hashRing.put(randSeed.nextLong(), t);
-            }
+    private static void checkWeight(Double weight) {
+
+        if(weight == null || !(weight > 0)) {
+
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+    }
+
+    private HashRing<T> init(Collection<T> objects) {
+
+        //构建阶段仍然借助TreeMap完成排序与去重，查找阶段只使用HashRing中的数组
+        TreeMap<Long, T> sortedRing = new TreeMap<>();
+        for(T t : objects) {
+
+            placeVirtualNodes(sortedRing, t);
         }
 
-        System.out.println(String.format("consistent hash ring has been initialed! total nodes: %s", hashRing.entrySet().size()));
+        System.out.println(String.format("consistent hash ring has been initialed! total nodes: %s", sortedRing.size()));
+        return HashRing.of(sortedRing, objects.toArray());
     }
 
+    @Override
     public T getShard(String key) {
 
-        Long hashKey = MurmurHash.hash(key);
-        Map.Entry<Long, T> target = hashRing.higherEntry(hashKey);
-        return target == null? hashRing.firstEntry().getValue() : target.getValue();
+        long hash = hashFunction.hash(key);
+        T shard = hashRing.getShard(hash);
+        ShardTelemetry<T> current = telemetry;
+        if(current != null) {
+
+            current.record(key, hash, shard);
+        }
+        return shard;
+    }
+
+    /**
+     * 以下三个重载不经过String编码，也不分配对象；开启统计时只记录节点请求数，不保留key，不参与热点key统计
+     */
+    @Override
+    public T getShard(long key) {
+
+        return getShardByHash(hashFunction.hash(key));
+    }
+
+    @Override
+    public T getShard(byte[] key, int offset, int length) {
+
+        return getShardByHash(hashFunction.hash(key, offset, length));
+    }
+
+    @Override
+    public T getShard(ByteBuffer key) {
+
+        return getShardByHash(hashFunction.hash(key));
+    }
+
+    @Override
+    public T getShardByHash(long hash) {
+
+        T shard = hashRing.getShard(hash);
+        ShardTelemetry<T> current = telemetry;
+        if(current != null) {
+
+            current.record(shard);
+        }
+        return shard;
+    }
+
+    /**
+     * 查找key顺时针方向的前out.length个不同的物理节点，第一个即为getShard的结果
+     * @param key
+     * @param out 输出数组，长度即所需副本数，可由调用方复用
+     * @return 实际写入out的节点个数，物理节点数不足时小于out.length
+     */
+    public int getShards(String key, T[] out) {
+
+        return hashRing.getShards(hashFunction.hash(key), out);
+    }
+
+    /**
+     * 将一批key按照所属节点分组，适用于multi-get之类需要对每个后端只发一次请求的场景。
+     * 对分配敏感的调用方请直接复用ShardBatch。
+     * @param keys
+     * @return 节点 -> 属于该节点的key
+     */
+    public Map<T, List<String>> groupByShard(Collection<String> keys) {
+
+        String[] keyArray = keys.toArray(new String[keys.size()]);
+        ShardBatch<T> batch = new ShardBatch<T>().resolve(this, keyArray, keyArray.length);
+        Map<T, List<String>> groups = new HashMap<>();
+        for(int g = 0; g < batch.groupCount(); g++) {
+
+            List<String> group = new ArrayList<>(batch.groupSize(g));
+            for(int i = 0; i < batch.groupSize(g); i++) {
+
+                group.add(keyArray[batch.keyIndex(g, i)]);
+            }
+            groups.put(batch.shard(g), group);
+        }
+        return groups;
+    }
+
+    /**
+     * 向环中添加一个节点，新环构建完成后原子替换旧环，并发的getShard不受影响
+     * @param node 新节点
+     * @return 归属发生变化的hash区间，均为 其他节点 -> node
+     */
+    public List<RangeMigration<T>> addNode(T node) {
+
+        return addNode(node, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * 向环中添加一个带权重的节点
+     * @param node 新节点
+     * @param weight 权重，必须大于0
+     * @return 归属发生变化的hash区间，均为 其他节点 -> node
+     */
+    public synchronized List<RangeMigration<T>> addNode(T node, double weight) {
+
+        HashRing<T> current = hashRing;
+        if(node == null || current.nodes().contains(node)) {
+
+            throw new IllegalArgumentException("node must be not null and not in the ring: " + node);
+        }
+        checkWeight(weight);
+        //先写入权重再发布新环，保证看到新环的线程一定能读到节点权重
+        weights.put(node, weight);
+        TreeMap<Long, T> sortedRing = current.toSortedMap();
+        placeVirtualNodes(sortedRing, node);
+        List<T> nodes = new ArrayList<>(current.nodes());
+        nodes.add(node);
+        return swap(current, HashRing.of(sortedRing, nodes.toArray()));
+    }
+
+    /**
+     * 从环中移除一个节点（下线或者排空），其虚拟节点负责的区间交给顺时针方向的下一个节点
+     * @param node 待移除节点
+     * @return 归属发生变化的hash区间，均为 node -> 其他节点
+     */
+    public synchronized List<RangeMigration<T>> removeNode(T node) {
+
+        HashRing<T> current = hashRing;
+        if(!current.nodes().contains(node)) {
+
+            throw new IllegalArgumentException("node is not in the ring: " + node);
+        }
+        if(current.nodeCount() == 1) {
+
+            throw new IllegalStateException("can not remove the last node of the ring!");
+        }
+        TreeMap<Long, T> sortedRing = current.toSortedMap();
+        Iterator<T> iterator = sortedRing.values().iterator();
+        while(iterator.hasNext()) {
+
+            if(iterator.next().equals(node)) {
+
+                iterator.remove();
+            }
+        }
+        List<T> nodes = new ArrayList<>(current.nodes());
+        nodes.remove(node);
+        List<RangeMigration<T>> migrations = swap(current, HashRing.of(sortedRing, nodes.toArray()));
+        weights.remove(node);
+        return migrations;
+    }
+
+    private void placeVirtualNodes(TreeMap<Long, T> sortedRing, T node) {
+
+        int replicas = (int) Math.max(1, Math.round(virtualNodeCount * weights.get(node)));
+        int spare = replicas;
+        for(int i = 0; i < replicas; i++) {
+
+            long position = placement.position(node, i);
+            //与已有虚拟节点冲突时使用replicas之后的序号重新放置，避免覆盖其他节点的虚拟节点
+            while(sortedRing.containsKey(position)) {
+
+                position = placement.position(node, spare++);
+            }
+            sortedRing.put(position, node);
+        }
+    }
+
+    private List<RangeMigration<T>> swap(HashRing<T> current, HashRing<T> next) {
+
+        List<RangeMigration<T>> migrations = current.migrationsTo(next);
+        hashRing = next;
+        return migrations;
+    }
+
+    /**
+     * @return 当前环中的全部物理节点
+     */
+    @Override
+    public List<T> getNodes() {
+
+        return hashRing.nodes();
+    }
+
+    /**
+     * @return 节点权重，节点不在环中时返回0
+     */
+    public double getWeight(T node) {
+
+        Double weight = weights.get(node);
+        return weight == null ? 0 : weight;
+    }
+
+    /**
+     * @return 计算key的hash值使用的算法，getShardByHash的调用方应使用同一个算法
+     */
+    public HashFunction getHashFunction() {
+
+        return hashFunction;
+    }
+
+    /**
+     * 开启路由统计，统计每个节点的请求数以及热点key，已有的统计数据会被丢弃
+     * @param sampleRate 采样率的倒数，1表示统计每一个请求
+     * @param topK 需要跟踪的热点key个数
+     */
+    public void enableTelemetry(int sampleRate, int topK) {
+
+        telemetry = new ShardTelemetry<>(sampleRate, topK);
+    }
+
+    public void disableTelemetry() {
+
+        telemetry = null;
+    }
+
+    /**
+     * @return 当前的统计结果，未开启统计时返回null
+     */
+    public ShardTelemetry.Snapshot<T> getTelemetry() {
+
+        ShardTelemetry<T> current = telemetry;
+        return current == null ? null : current.snapshot();
+    }
+
+    HashRing<T> ring() {
+
+        return hashRing;
     }
 
     public static void main(String[] args) {
@@ -58,6 +381,7 @@ public class ConsistentHash <T> {
         List<String> targets = Arrays.asList("1","2","3","4","5");
         ConsistentHash<String> hashEntity = new ConsistentHash(512, targets);
 
+        Random random = new Random(System.currentTimeMillis());
         Map<String, AtomicInteger> countMap = new HashMap<>();
         for(String target: targets) {
 
@@ -65,7 +389,7 @@ public class ConsistentHash <T> {
         }
         for(int i = 0; i < 100000; i++) {
 
-            String key = String.valueOf(randSeed.nextLong());
+            String key = String.valueOf(random.nextLong());
             String value = hashEntity.getShard(key);
             countMap.get(value).getAndIncrement();
             //System.out.println(String.format("current %s, target: %s", key, hashEntity.getShard(key)));
@@ -0,0 +1,33 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.MurmurHash;
+
+import java.nio.charset.Charset;
+
+/**
+ * 由 节点标识 + 虚拟节点序号 的hash值决定虚拟节点的位置。
+ * 只要节点标识相同，任意JVM无需任何协调即可构建出完全一致的hash环，客户端可以直接完成路由。
+ * 节点标识默认为String.valueOf(node)，节点类型没有稳定的toString时需要覆盖identity方法；
+ * 需要其他hash算法时覆盖hash方法。
+ * @param <T>
+ */
+public class HashPlacement<T> implements NodePlacement<T> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public long position(T node, int replica) {
+        return hash((identity(node) + "#" + replica).getBytes(UTF_8));
+    }
+
+    /**
+     * @return 节点在所有进程中都相同的标识
+     */
+    protected String identity(T node) {
+        return String.valueOf(node);
+    }
+
+    protected long hash(byte[] key) {
+        return MurmurHash.hash(key);
+    }
+}
@@ -0,0 +1,307 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import java.util.*;
+
+/**
+ * 一致性hash环的紧凑表示：有序的long[]存放虚拟节点的hash值，平行的int[]存放该位置所属物理节点的下标。
+ * 查找时先用hash的高位查前缀表，把二分查找的范围缩小到一个桶内，整个查找过程没有装箱，也不会分配任何对象。
+ * HashRing创建之后不可变，所有字段均为final，可以安全地发布给任意线程使用。
+ * @param <T>
+ */
+public final class HashRing<T> {
+
+    /**
+     * 前缀表最多使用的bit数，2^16个int约256KB，再大对cache不友好
+     */
+    private static final int MAX_TABLE_BITS = 16;
+
+    /**
+     * 预计算副本表的深度，覆盖最常见的三副本写入
+     */
+    private static final int REPLICA_TABLE_DEPTH = 3;
+
+    private final long[] hashes;
+
+    private final int[] owners;
+
+    private final Object[] nodes;
+
+    private final int tableBits;
+
+    /**
+     * table[b]为第一个桶号 >= b 的虚拟节点下标，长度为2^tableBits + 1
+     */
+    private final int[] table;
+
+    private final int replicaDepth;
+
+    /**
+     * replicas[position * replicaDepth + i]为从position开始顺时针方向第i个不同的物理节点下标
+     */
+    private final int[] replicas;
+
+    /**
+     * @param hashes 升序排列且不重复的虚拟节点hash值
+     * @param owners 与hashes平行，每个虚拟节点所属物理节点在nodes中的下标
+     * @param nodes 物理节点
+     */
+    HashRing(long[] hashes, int[] owners, Object[] nodes) {
+        if(hashes.length == 0 || hashes.length != owners.length) {
+            throw new IllegalArgumentException("hash ring must be not empty!");
+        }
+        this.hashes = hashes;
+        this.owners = owners;
+        this.nodes = nodes;
+
+        int bits = 32 - Integer.numberOfLeadingZeros(hashes.length);
+        this.tableBits = Math.max(1, Math.min(MAX_TABLE_BITS, bits));
+        this.table = new int[(1 << tableBits) + 1];
+        int index = 0;
+        for(int b = 0; b < table.length; b++) {
+            while(index < hashes.length && bucket(hashes[index]) < b) {
+                index++;
+            }
+            table[b] = index;
+        }
+
+        this.replicaDepth = Math.min(REPLICA_TABLE_DEPTH, nodes.length);
+        this.replicas = buildReplicaTable();
+    }
+
+    private int[] buildReplicaTable() {
+        int[] result = new int[hashes.length * replicaDepth];
+        for(int position = 0; position < hashes.length; position++) {
+            int base = position * replicaDepth;
+            int found = 0;
+            for(int step = 0; step < hashes.length && found < replicaDepth; step++) {
+                int owner = owners[(position + step) % hashes.length];
+                if(!contains(result, base, base + found, owner)) {
+                    result[base + found++] = owner;
+                }
+            }
+            //环上的物理节点数少于nodes时（例如某节点的虚拟节点全部冲突），剩余的表项以-1标记
+            while(found < replicaDepth) {
+                result[base + found++] = -1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean contains(int[] array, int from, int to, int value) {
+        for(int i = from; i < to; i++) {
+            if(array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 由 hash -> 物理节点 的有序map构建hash环，只在构建时使用，因此不关心构建过程的分配
+     */
+    static <T> HashRing<T> of(NavigableMap<Long, T> ring, Object[] nodes) {
+        Map<Object, Integer> nodeIndex = new HashMap<>();
+        for(int i = 0; i < nodes.length; i++) {
+            nodeIndex.put(nodes[i], i);
+        }
+        long[] hashes = new long[ring.size()];
+        int[] owners = new int[ring.size()];
+        int i = 0;
+        for(Map.Entry<Long, T> entry : ring.entrySet()) {
+            Integer owner = nodeIndex.get(entry.getValue());
+            if(owner == null) {
+                throw new IllegalArgumentException("unknown node: " + entry.getValue());
+            }
+            hashes[i] = entry.getKey();
+            owners[i] = owner;
+            i++;
+        }
+        return new HashRing<>(hashes, owners, nodes);
+    }
+
+    /**
+     * 还原为 hash -> 物理节点 的有序map，用于在当前环的基础上增删节点
+     */
+    TreeMap<Long, T> toSortedMap() {
+        TreeMap<Long, T> ring = new TreeMap<>();
+        for(int i = 0; i < hashes.length; i++) {
+            ring.put(hashes[i], node(owners[i]));
+        }
+        return ring;
+    }
+
+    /**
+     * 计算从当前环切换到next环时，归属发生变化的所有hash区间。
+     * 两个环的虚拟节点合并后把整个环切分成若干小区间，每个小区间在新旧环中各自只属于一个节点，
+     * 逐一比较即可，相邻且迁移方向相同的区间会被合并。
+     */
+    List<RangeMigration<T>> migrationsTo(HashRing<T> next) {
+        long[] points = mergePoints(hashes, next.hashes);
+        List<RangeMigration<T>> migrations = new ArrayList<>();
+        long start = 0;
+        T from = null;
+        T to = null;
+        for(int i = 0; i < points.length; i++) {
+            //key == points[i] 与 [points[i], points[i + 1]) 区间内的key命中的是同一个虚拟节点
+            T before = getShard(points[i]);
+            T after = next.getShard(points[i]);
+            long end = points[(i + 1) % points.length];
+            boolean last = i == points.length - 1;
+            if(before.equals(after)) {
+                if(from != null) {
+                    migrations.add(new RangeMigration<>(start, points[i], from, to));
+                    from = null;
+                }
+                continue;
+            }
+            if(from != null && (!from.equals(before) || !to.equals(after) || last)) {
+                //最后一段是跨越MAX_VALUE的绕回区间，不与前面的区间合并
+                migrations.add(new RangeMigration<>(start, points[i], from, to));
+                from = null;
+            }
+            if(from == null) {
+                start = points[i];
+                from = before;
+                to = after;
+            }
+            if(last) {
+                migrations.add(new RangeMigration<>(start, end, from, to));
+            }
+        }
+        return migrations;
+    }
+
+    private static long[] mergePoints(long[] left, long[] right) {
+        long[] merged = new long[left.length + right.length];
+        int i = 0, j = 0, k = 0;
+        while(i < left.length || j < right.length) {
+            long value;
+            if(j == right.length || (i < left.length && left[i] <= right[j])) {
+                value = left[i++];
+            } else {
+                value = right[j++];
+            }
+            if(k == 0 || merged[k - 1] != value) {
+                merged[k++] = value;
+            }
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    /**
+     * 将有符号的hash值映射为单调递增的无符号桶号
+     */
+    private int bucket(long hash) {
+        return (int) ((hash ^ Long.MIN_VALUE) >>> (64 - tableBits));
+    }
+
+    /**
+     * 找到第一个hash值严格大于给定hash的虚拟节点位置，不存在时绕回0号位置，语义与TreeMap.higherEntry一致
+     * @param hash
+     * @return 虚拟节点在环上的位置
+     */
+    public int positionOf(long hash) {
+        int b = bucket(hash);
+        int low = table[b];
+        int high = table[b + 1];
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(hashes[middle] <= hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == hashes.length ? 0 : low;
+    }
+
+    /**
+     * 批量查找：hash值已经升序排列时，只需沿环走一遍即可得到所有位置，而不必做count次独立的二分查找。
+     * 批量很小时逐个查找反而更快，此时退化为positionOf。
+     * @param sortedHashes 升序排列的hash值
+     * @param count sortedHashes中有效元素的个数
+     * @param positions 输出，positions[i]为sortedHashes[i]对应的虚拟节点位置
+     */
+    public void positionsOf(long[] sortedHashes, int count, int[] positions) {
+        if((long) count * 8 < hashes.length) {
+            for(int i = 0; i < count; i++) {
+                positions[i] = positionOf(sortedHashes[i]);
+            }
+            return;
+        }
+        int position = 0;
+        for(int i = 0; i < count; i++) {
+            long hash = sortedHashes[i];
+            while(position < hashes.length && hashes[position] <= hash) {
+                position++;
+            }
+            positions[i] = position == hashes.length ? 0 : position;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getShard(long hash) {
+        return (T) nodes[owners[positionOf(hash)]];
+    }
+
+    /**
+     * 查找从key开始顺时针方向的前out.length个不同的物理节点，用于多副本写入以及quorum读写。
+     * 副本数不超过预计算深度（3）时只需一次查找加一次顺序读，超过时继续沿环查找，均不分配对象。
+     * @param hash key的hash值
+     * @param out 输出数组，长度即所需副本数，可由调用方复用
+     * @return 实际写入out的节点个数，为out.length与物理节点数中的较小值
+     */
+    public int getShards(long hash, T[] out) {
+        int n = Math.min(out.length, nodes.length);
+        int position = positionOf(hash);
+        int base = position * replicaDepth;
+        int found = 0;
+        while(found < n && found < replicaDepth && replicas[base + found] >= 0) {
+            out[found] = node(replicas[base + found]);
+            found++;
+        }
+        for(int step = 0; step < hashes.length && found < n; step++) {
+            T candidate = node(owners[(position + step) % hashes.length]);
+            boolean duplicate = false;
+            for(int i = 0; i < found && !duplicate; i++) {
+                duplicate = out[i] == candidate;
+            }
+            if(!duplicate) {
+                out[found++] = candidate;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 虚拟节点个数
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * 物理节点个数
+     */
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public long hashAt(int position) {
+        return hashes[position];
+    }
+
+    public int ownerAt(int position) {
+        return owners[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T node(int nodeIndex) {
+        return (T) nodes[nodeIndex];
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> nodes() {
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(nodes));
+    }
+}
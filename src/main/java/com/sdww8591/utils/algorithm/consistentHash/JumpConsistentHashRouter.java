@@ -0,0 +1,43 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.HashFunction;
+
+import java.util.Collection;
+
+/**
+ * Jump Consistent Hash（Lamping, Veach）：不需要任何额外内存，O(ln n)时间将key映射到[0, n)中的一个桶，
+ * 桶数由n变为n+1时只有1/(n+1)的key发生迁移。
+ * 代价是只能在节点列表的末尾增删节点，适合按序号编号的存储分片，不适合任意节点可能下线的场景。
+ * @param <T>
+ */
+public class JumpConsistentHashRouter<T> extends AbstractShardRouter<T> {
+
+    public JumpConsistentHashRouter(Collection<T> objects) {
+        super(objects);
+    }
+
+    public JumpConsistentHashRouter(Collection<T> objects, HashFunction hashFunction) {
+        super(objects, hashFunction);
+    }
+
+    @Override
+    public T getShardByHash(long hash) {
+        return node(jump(hash, nodes.length));
+    }
+
+    /**
+     * @param key key的64位hash值
+     * @param buckets 桶数
+     * @return [0, buckets)中的桶序号
+     */
+    public static int jump(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while(j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
@@ -0,0 +1,95 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.HashFunction;
+import com.sdww8591.utils.third.HashFunctions;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Maglev Hash（Google Maglev负载均衡器）：预先计算一张大小为质数M的查找表，查找只需一次乘法和一次数组访问。
+ * 每个节点按照 offset + j * skip 的排列顺序轮流抢占表项，因此各节点分到的表项数最多相差1，负载非常均匀；
+ * 节点变化时除了必须迁移的key之外还会有少量额外漂移。
+ * @param <T>
+ */
+public class MaglevRouter<T> extends AbstractShardRouter<T> {
+
+    /**
+     * 默认表大小，需要为质数并且远大于节点数（建议至少100倍）
+     */
+    public static final int DEFAULT_TABLE_SIZE = 65537;
+
+    private final int[] lookup;
+
+    public MaglevRouter(Collection<T> objects) {
+        this(objects, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param objects 节点
+     * @param tableSize 查找表大小，必须为质数且不小于节点数
+     */
+    public MaglevRouter(Collection<T> objects, int tableSize) {
+        this(objects, tableSize, HashFunctions.murmur64A());
+    }
+
+    /**
+     * @param objects 节点
+     * @param tableSize 查找表大小，必须为质数且不小于节点数
+     * @param hashFunction 计算key的hash值使用的算法
+     */
+    public MaglevRouter(Collection<T> objects, int tableSize, HashFunction hashFunction) {
+        super(objects, hashFunction);
+        if(tableSize < nodes.length || !isPrime(tableSize)) {
+            throw new IllegalArgumentException("table size must be a prime not less than node count: " + tableSize);
+        }
+        this.lookup = populate(tableSize);
+    }
+
+    private int[] populate(int tableSize) {
+        int n = nodes.length;
+        long[] offsets = new long[n];
+        long[] skips = new long[n];
+        long[] next = new long[n];
+        for(int i = 0; i < n; i++) {
+            offsets[i] = (identityHash(nodes[i], "offset") >>> 1) % tableSize;
+            skips[i] = (identityHash(nodes[i], "skip") >>> 1) % (tableSize - 1) + 1;
+        }
+
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        int filled = 0;
+        while(true) {
+            for(int i = 0; i < n; i++) {
+                long candidate = (offsets[i] + next[i] * skips[i]) % tableSize;
+                while(table[(int) candidate] >= 0) {
+                    next[i]++;
+                    candidate = (offsets[i] + next[i] * skips[i]) % tableSize;
+                }
+                table[(int) candidate] = i;
+                next[i]++;
+                if(++filled == tableSize) {
+                    return table;
+                }
+            }
+        }
+    }
+
+    @Override
+    public T getShardByHash(long hash) {
+        //用高32位乘以表大小再取高位，等价于均匀地映射到[0, tableSize)，比取模更快
+        return node(lookup[(int) (((hash >>> 32) * lookup.length) >>> 32)]);
+    }
+
+    private static boolean isPrime(int value) {
+        if(value < 2) {
+            return false;
+        }
+        for(int i = 2; (long) i * i <= value; i++) {
+            if(value % i == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
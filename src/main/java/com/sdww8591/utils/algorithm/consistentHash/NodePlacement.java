@@ -0,0 +1,15 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+/**
+ * 虚拟节点在hash环上的放置策略
+ * @param <T>
+ */
+public interface NodePlacement<T> {
+
+    /**
+     * @param node 物理节点
+     * @param replica 虚拟节点序号，发生位置冲突时ConsistentHash会使用大于等于该节点虚拟节点个数的序号重新放置
+     * @return 虚拟节点在环上的位置
+     */
+    long position(T node, int replica);
+}
@@ -0,0 +1,18 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import java.util.Random;
+
+/**
+ * 随机放置虚拟节点，与最初的实现一致。
+ * 同一个key在不同进程、或者同一进程重启之后可能被路由到不同的节点，只适用于单进程内的路由。
+ * @param <T>
+ */
+public class RandomPlacement<T> implements NodePlacement<T> {
+
+    private static final Random randSeed = new Random(System.currentTimeMillis());
+
+    @Override
+    public long position(T node, int replica) {
+        return randSeed.nextLong();
+    }
+}
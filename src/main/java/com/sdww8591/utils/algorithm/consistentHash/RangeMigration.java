@@ -0,0 +1,42 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import lombok.Getter;
+
+/**
+ * 一段归属发生变化的hash区间：[startInclusive, endExclusive) 内的key由from迁移到to。
+ * 当startInclusive >= endExclusive时，区间跨过了Long.MAX_VALUE，绕回到Long.MIN_VALUE之后继续。
+ * @param <T>
+ */
+@Getter
+public final class RangeMigration<T> {
+
+    private final long startInclusive;
+
+    private final long endExclusive;
+
+    private final T from;
+
+    private final T to;
+
+    RangeMigration(long startInclusive, long endExclusive, T from, T to) {
+        this.startInclusive = startInclusive;
+        this.endExclusive = endExclusive;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * 判断一个key的hash值是否落在本区间内，rebalancer可以据此只迁移受影响的key
+     */
+    public boolean contains(long hash) {
+        if(startInclusive < endExclusive) {
+            return hash >= startInclusive && hash < endExclusive;
+        }
+        return hash >= startInclusive || hash < endExclusive;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d) %s -> %s", startInclusive, endExclusive, from, to);
+    }
+}
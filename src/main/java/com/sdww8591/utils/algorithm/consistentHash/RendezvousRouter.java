@@ -0,0 +1,43 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.HashFunction;
+import com.sdww8591.utils.third.HashFunctions;
+import com.sdww8591.utils.third.MurmurHash3;
+
+import java.util.Collection;
+
+/**
+ * Rendezvous Hash（Highest Random Weight）：对每个节点计算 fmix64(hash ^ 节点种子)，取分数最高的节点。
+ * 查找为O(n)，但不需要虚拟节点，负载天然均匀，任意节点下线时只有该节点的key发生迁移，适合节点数较少的集群。
+ * @param <T>
+ */
+public class RendezvousRouter<T> extends AbstractShardRouter<T> {
+
+    private final long[] seeds;
+
+    public RendezvousRouter(Collection<T> objects) {
+        this(objects, HashFunctions.murmur64A());
+    }
+
+    public RendezvousRouter(Collection<T> objects, HashFunction hashFunction) {
+        super(objects, hashFunction);
+        this.seeds = new long[nodes.length];
+        for(int i = 0; i < nodes.length; i++) {
+            seeds[i] = identityHash(nodes[i], "rendezvous");
+        }
+    }
+
+    @Override
+    public T getShardByHash(long hash) {
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for(int i = 0; i < seeds.length; i++) {
+            long score = MurmurHash3.fmix64(hash ^ seeds[i]);
+            if(score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return node(best);
+    }
+}
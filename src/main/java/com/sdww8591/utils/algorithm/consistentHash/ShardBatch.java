@@ -0,0 +1,191 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.HashFunction;
+
+/**
+ * 批量路由：一次性计算一批key的归属，并按节点分组，便于对每个后端只发一次请求（multi-get）。
+ * 计算过程：
+ * 1. 紧凑循环计算所有key的hash值
+ * 2. 对hash值排序（同时记录key的原始下标），然后沿hash环合并式地走一遍，代替n次独立的二分查找
+ * 3. 按节点做计数排序，得到每个节点对应的key下标
+ * 所有中间结果都保存在可复用的数组中，同一个ShardBatch反复使用时不再产生垃圾。
+ * ShardBatch不是线程安全的，建议每个线程持有一个实例。
+ * @param <T>
+ */
+public class ShardBatch<T> {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private HashRing<T> ring;
+
+    private long[] hashes = new long[0];
+
+    /**
+     * 排序之后，order[i]为第i小的hash值对应的key下标
+     */
+    private int[] order = new int[0];
+
+    private int[] positions = new int[0];
+
+    /**
+     * 分组结果：groupedKeys[groupStart[g], groupStart[g + 1]) 为第g组的key下标
+     */
+    private int[] groupedKeys = new int[0];
+
+    private int[] groupStart = new int[1];
+
+    private int[] groupNode = new int[0];
+
+    private int[] nodeCounts = new int[0];
+
+    private int groupCount;
+
+    /**
+     * 计算keys[0, count)的归属并分组，结果在下一次resolve之前有效
+     * @param consistentHash 路由使用的一致性hash，整批key使用同一个hash环快照
+     * @param keys key数组，可以是调用方复用的缓冲区
+     * @param count 有效key的个数
+     * @return this
+     */
+    public ShardBatch<T> resolve(ConsistentHash<T> consistentHash, String[] keys, int count) {
+        if(count < 0 || count > keys.length) {
+            throw new IllegalArgumentException("illegal key count: " + count);
+        }
+        ring = consistentHash.ring();
+        ensureCapacity(count, ring.nodeCount());
+
+        HashFunction hashFunction = consistentHash.getHashFunction();
+        for(int i = 0; i < count; i++) {
+            hashes[i] = hashFunction.hash(keys[i]);
+            order[i] = i;
+        }
+        sort(hashes, order, 0, count - 1);
+        ring.positionsOf(hashes, count, positions);
+
+        //positions[i]对应的是排序后的第i个hash，转换为节点下标后按节点做计数排序
+        int nodeCount = ring.nodeCount();
+        for(int i = 0; i < nodeCount; i++) {
+            nodeCounts[i] = 0;
+        }
+        for(int i = 0; i < count; i++) {
+            positions[i] = ring.ownerAt(positions[i]);
+            nodeCounts[positions[i]]++;
+        }
+        groupCount = 0;
+        int offset = 0;
+        for(int node = 0; node < nodeCount; node++) {
+            int size = nodeCounts[node];
+            if(size > 0) {
+                groupNode[groupCount] = node;
+                groupStart[groupCount] = offset;
+                groupCount++;
+            }
+            //nodeCounts复用为每个节点的写入位置
+            nodeCounts[node] = offset;
+            offset += size;
+        }
+        groupStart[groupCount] = offset;
+        for(int i = 0; i < count; i++) {
+            groupedKeys[nodeCounts[positions[i]]++] = order[i];
+        }
+        return this;
+    }
+
+    /**
+     * @return 本批key涉及的节点个数
+     */
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return 第group组的节点
+     */
+    public T shard(int group) {
+        return ring.node(groupNode[group]);
+    }
+
+    public int groupSize(int group) {
+        return groupStart[group + 1] - groupStart[group];
+    }
+
+    /**
+     * @return 第group组的第i个key在resolve传入的keys数组中的下标
+     */
+    public int keyIndex(int group, int i) {
+        return groupedKeys[groupStart[group] + i];
+    }
+
+    private void ensureCapacity(int count, int nodeCount) {
+        if(hashes.length < count) {
+            int capacity = Math.max(count, hashes.length * 2);
+            hashes = new long[capacity];
+            order = new int[capacity];
+            positions = new int[capacity];
+            groupedKeys = new int[capacity];
+        }
+        if(nodeCounts.length < nodeCount) {
+            nodeCounts = new int[nodeCount];
+            groupNode = new int[nodeCount];
+            groupStart = new int[nodeCount + 1];
+        }
+    }
+
+    /**
+     * 对hashes[low, high]升序排序，并同步交换order中的元素
+     */
+    private static void sort(long[] hashes, int[] order, int low, int high) {
+        while(high - low >= INSERTION_SORT_THRESHOLD) {
+            long pivot = median(hashes[low], hashes[(low + high) >>> 1], hashes[high]);
+            int i = low;
+            int j = high;
+            while(i <= j) {
+                while(hashes[i] < pivot) {
+                    i++;
+                }
+                while(hashes[j] > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    swap(hashes, order, i++, j--);
+                }
+            }
+            //先递归较短的一边，递归深度不超过log(n)
+            if(j - low < high - i) {
+                sort(hashes, order, low, j);
+                low = i;
+            } else {
+                sort(hashes, order, i, high);
+                high = j;
+            }
+        }
+        for(int i = low + 1; i <= high; i++) {
+            long hash = hashes[i];
+            int index = order[i];
+            int j = i - 1;
+            while(j >= low && hashes[j] > hash) {
+                hashes[j + 1] = hashes[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            hashes[j + 1] = hash;
+            order[j + 1] = index;
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        if(a < b) {
+            return b < c ? b : (a < c ? c : a);
+        }
+        return a < c ? a : (b < c ? c : b);
+    }
+
+    private static void swap(long[] hashes, int[] order, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+    }
+}
@@ -0,0 +1,41 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 将key路由到节点的统一接口。不同实现在吞吐、内存占用以及节点变化时key的漂移量之间各有取舍：
+ * <ul>
+ *     <li>ConsistentHash：hash环，O(log n)查找，支持在线增删节点与权重</li>
+ *     <li>JumpConsistentHashRouter：不占内存，O(ln n)查找，只能在末尾增删节点</li>
+ *     <li>MaglevRouter：预计算查找表，O(1)查找，节点变化时有少量额外漂移</li>
+ *     <li>RendezvousRouter：最高随机权重，O(n)查找，适合小集群</li>
+ * </ul>
+ * @param <T>
+ */
+public interface ShardRouter<T> {
+
+    T getShard(String key);
+
+    /**
+     * 数字ID类型的key，避免转换为String
+     */
+    T getShard(long key);
+
+    /**
+     * key为key[offset, offset + length)，适用于直接从网络层的缓冲区中路由
+     */
+    T getShard(byte[] key, int offset, int length);
+
+    /**
+     * key为buffer中position到limit之间的字节，不修改buffer的状态
+     */
+    T getShard(ByteBuffer key);
+
+    /**
+     * @param hash key的64位hash值
+     */
+    T getShardByHash(long hash);
+
+    List<T> getNodes();
+}
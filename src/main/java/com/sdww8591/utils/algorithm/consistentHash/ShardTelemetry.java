@@ -0,0 +1,271 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一致性hash的路由统计：每个物理节点的请求数，以及访问最频繁的key。
+ * 为了降低开销，只按1/sampleRate的概率对请求采样：
+ * <ul>
+ *     <li>节点请求数使用StripedCounter记录</li>
+ *     <li>key的访问次数使用Count-Min Sketch估计，占用固定内存，只会高估不会低估</li>
+ *     <li>热点key使用大小为topK的小顶堆维护，每个HotKey记录自己在堆中的下标，已经在堆中的key更新次数时原地下沉，
+ *     不需要线性查找；堆由tryLock保护，锁被占用时直接跳过本次更新，路由线程永远不会等待</li>
+ * </ul>
+ * 所有计数都是采样值乘以sampleRate之后的估计值。
+ * @param <T>
+ */
+public class ShardTelemetry<T> {
+
+    private static final int SKETCH_DEPTH = 4;
+
+    private static final Comparator<HotKey> BY_COUNT = new Comparator<HotKey>() {
+        @Override
+        public int compare(HotKey o1, HotKey o2) {
+            return o1.count < o2.count ? -1 : (o1.count == o2.count ? 0 : 1);
+        }
+    };
+
+    private final int sampleRate;
+
+    private final int topK;
+
+    private final int widthMask;
+
+    private final AtomicLongArray sketch;
+
+    private final ConcurrentMap<T, StripedCounter> nodeCounters = new ConcurrentHashMap<>();
+
+    private final StripedCounter sampled = new StripedCounter();
+
+    private final ReentrantLock heapLock = new ReentrantLock();
+
+    /**
+     * 按估计次数排列的小顶堆，heap[0]次数最少；heapIndex用于查找key对应的HotKey
+     */
+    private final HotKey[] heap;
+
+    private int heapSize;
+
+    private final Map<String, HotKey> heapIndex = new HashMap<>();
+
+    /**
+     * @param sampleRate 采样率的倒数，1表示统计每一个请求
+     * @param topK 需要跟踪的热点key个数
+     */
+    public ShardTelemetry(int sampleRate, int topK) {
+        if(sampleRate < 1 || topK < 1) {
+            throw new IllegalArgumentException("sample rate and top k must be positive!");
+        }
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+        int width = Integer.highestOneBit(Math.max(1024, topK * 64) * 2 - 1);
+        this.widthMask = width - 1;
+        this.sketch = new AtomicLongArray(width * SKETCH_DEPTH);
+        this.heap = new HotKey[topK];
+    }
+
+    /**
+     * 记录一次路由，由ConsistentHash在每次getShard时调用
+     * @param key 路由的key
+     * @param hash key的hash值，复用路由时已经计算好的结果
+     * @param shard 路由结果
+     */
+    public void record(String key, long hash, T shard) {
+        if(sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        sampled.increment();
+        counterOf(shard).increment();
+        long estimate = addToSketch(hash);
+        if(heapLock.tryLock()) {
+            try {
+                offer(key, estimate);
+            } finally {
+                heapLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 记录一次没有String key的路由，只统计节点请求数，不参与热点key统计，
+     * 由ConsistentHash的long/byte[]/ByteBuffer重载以及getShardByHash调用
+     * @param shard 路由结果
+     */
+    public void record(T shard) {
+        if(sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        sampled.increment();
+        counterOf(shard).increment();
+    }
+
+    /**
+     * Count-Min Sketch：每一行用 h1 + i * h2 作为第i个hash函数（Kirsch-Mitzenmacher），
+     * 估计值为所有行中的最小值
+     */
+    private long addToSketch(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for(int i = 0; i < SKETCH_DEPTH; i++) {
+            int column = (h1 + i * h2) & widthMask;
+            estimate = Math.min(estimate, sketch.incrementAndGet(i * (widthMask + 1) + column));
+        }
+        return estimate;
+    }
+
+    private void offer(String key, long estimate) {
+        HotKey hotKey = heapIndex.get(key);
+        if(hotKey != null) {
+            //sketch的估计值只增不减，次数变大的节点只需要下沉
+            if(estimate > hotKey.count) {
+                hotKey.count = estimate;
+                siftDown(hotKey.position);
+            }
+            return;
+        }
+        if(heapSize < topK) {
+            hotKey = new HotKey(key, estimate);
+            place(hotKey, heapSize++);
+            siftUp(hotKey.position);
+        } else if(heap[0].count < estimate) {
+            heapIndex.remove(heap[0].key);
+            hotKey = new HotKey(key, estimate);
+            place(hotKey, 0);
+            siftDown(0);
+        } else {
+            return;
+        }
+        heapIndex.put(key, hotKey);
+    }
+
+    private void place(HotKey hotKey, int position) {
+        heap[position] = hotKey;
+        hotKey.position = position;
+    }
+
+    private void siftUp(int position) {
+        HotKey hotKey = heap[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(heap[parent].count <= hotKey.count) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(hotKey, position);
+    }
+
+    private void siftDown(int position) {
+        HotKey hotKey = heap[position];
+        for(;;) {
+            int child = 2 * position + 1;
+            if(child >= heapSize) {
+                break;
+            }
+            if(child + 1 < heapSize && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if(hotKey.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(hotKey, position);
+    }
+
+    private StripedCounter counterOf(T shard) {
+        StripedCounter counter = nodeCounters.get(shard);
+        if(counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = nodeCounters.putIfAbsent(shard, created);
+            if(counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * 读取当前统计结果，读取过程不会阻塞路由线程
+     */
+    public Snapshot<T> snapshot() {
+        Map<T, Long> nodeRequests = new HashMap<>();
+        for(Map.Entry<T, StripedCounter> entry : nodeCounters.entrySet()) {
+            nodeRequests.put(entry.getKey(), entry.getValue().sum() * sampleRate);
+        }
+        List<HotKey> hotKeys = new ArrayList<>();
+        heapLock.lock();
+        try {
+            for(int i = 0; i < heapSize; i++) {
+                hotKeys.add(new HotKey(heap[i].key, heap[i].count * sampleRate));
+            }
+        } finally {
+            heapLock.unlock();
+        }
+        Collections.sort(hotKeys, Collections.reverseOrder(BY_COUNT));
+        return new Snapshot<>(sampled.sum() * sampleRate, nodeRequests, hotKeys);
+    }
+
+    @Getter
+    public static final class HotKey {
+
+        private final String key;
+
+        /**
+         * 估计的访问次数
+         */
+        private long count;
+
+        /**
+         * 在堆中的下标，只在持有heapLock时读写
+         */
+        @Getter(AccessLevel.NONE)
+        private int position;
+
+        private HotKey(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+
+    @Getter
+    public static final class Snapshot<T> {
+
+        /**
+         * 估计的总请求数
+         */
+        private final long totalRequests;
+
+        /**
+         * 物理节点 -> 估计的请求数
+         */
+        private final Map<T, Long> nodeRequests;
+
+        /**
+         * 按估计次数从高到低排列的热点key
+         */
+        private final List<HotKey> hotKeys;
+
+        private Snapshot(long totalRequests, Map<T, Long> nodeRequests, List<HotKey> hotKeys) {
+            this.totalRequests = totalRequests;
+            this.nodeRequests = Collections.unmodifiableMap(nodeRequests);
+            this.hotKeys = Collections.unmodifiableList(hotKeys);
+        }
+    }
+}
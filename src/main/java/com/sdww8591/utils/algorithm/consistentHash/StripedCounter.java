@@ -0,0 +1,61 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器：不同线程更新不同的槽位，每个槽位独占一条cache line，避免多核同时更新一个AtomicLong时的cache line争用。
+ * 读取时对所有槽位求和，结果不是一个瞬时快照，但对于负载判断、统计之类的场景已经足够。
+ */
+final class StripedCounter {
+
+    /**
+     * 64字节的cache line可以容纳8个long
+     */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static int stripes() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        return Math.min(stripes, 64);
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (hash & (STRIPES - 1)) * PADDING;
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(index(), delta);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * 读取并清零，用于周期性地导出统计数据
+     */
+    public long sumThenReset() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.getAndSet(i * PADDING, 0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,235 @@
+package com.sdww8591.utils.algorithm.filter;
+
+import com.sdww8591.utils.third.MurmurHash;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分块布隆过滤器（Putze, Sanders, Singler）：位数组按512bit（8个long，即一条64字节的cache line）划分为块，
+ * 一个key的k个bit全部落在同一块中，因此每次查询只有一次hash计算和一次cache miss。
+ * 代价是在相同内存下误判率比标准布隆过滤器略高。
+ * <ul>
+ *     <li>key的64位MurmurHash的高32位只用于选择块；低32位中的低16位作为h1、高16位作为h2，
+ *     按 h1 + i * h2 的方式（Kirsch-Mitzenmacher）生成块内的k个bit。块号与块内位置来自不重叠的bit，
+ *     大过滤器中块内位置也不会与块号相关</li>
+ *     <li>位数组存放在AtomicLongArray中，插入时对每个long做CAS，插入与查询都不加锁</li>
+ *     <li>writeTo/readFrom使用紧凑的二进制格式，便于在进程之间传递或持久化</li>
+ * </ul>
+ * 布隆过滤器不支持删除，需要删除时使用CuckooFilter。
+ */
+public class BlockedBloomFilter {
+
+    private static final int MAGIC = 0x424C4F4D;
+
+    private static final int BLOCK_WORDS = 8;
+
+    private static final int BLOCK_MASK = BLOCK_WORDS * 64 - 1;
+
+    private static final int MAX_HASH_COUNT = 16;
+
+    private final AtomicLongArray words;
+
+    private final int blockCount;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计插入的key个数
+     * @param falsePositiveRate 期望的误判率，分块之后实际误判率会略高一些
+     */
+    public BlockedBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if(expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expected insertions must be positive: " + expectedInsertions);
+        }
+        if(!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("false positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        //m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long blocks = (long) Math.ceil(expectedInsertions * bitsPerKey / (BLOCK_WORDS * 64));
+        if(blocks > Integer.MAX_VALUE / BLOCK_WORDS) {
+            throw new IllegalArgumentException("filter is too large: " + expectedInsertions);
+        }
+        this.blockCount = (int) Math.max(1, blocks);
+        this.hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerKey * Math.log(2))));
+        this.words = new AtomicLongArray(blockCount * BLOCK_WORDS);
+    }
+
+    private BlockedBloomFilter(int blockCount, int hashCount, AtomicLongArray words) {
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+        this.words = words;
+    }
+
+    public boolean put(String key) {
+        return putHash(MurmurHash.hash(key));
+    }
+
+    public boolean put(byte[] key, int offset, int length) {
+        return putHash(MurmurHash.hash(key, offset, length));
+    }
+
+    public boolean put(long key) {
+        return putHash(MurmurHash.hash(key));
+    }
+
+    /**
+     * 插入一个已经计算好的64位hash值，调用方需要保证插入与查询使用同一个hash算法
+     * @return 是否有bit由0变为1，返回false说明该key之前可能已经插入过
+     */
+    public boolean putHash(long hash) {
+        int base = blockOf(hash);
+        int h1 = (int) hash;
+        //h2为奇数时 i * h2 对512取模两两不同，k个bit不会重复
+        int h2 = secondHash(h1);
+        boolean changed = false;
+        //先在局部变量中合并同一个long上的bit，每个long最多只做一次CAS
+        long m0 = 0, m1 = 0, m2 = 0, m3 = 0, m4 = 0, m5 = 0, m6 = 0, m7 = 0;
+        for(int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & BLOCK_MASK;
+            long mask = 1L << bit;
+            switch(bit >>> 6) {
+                case 0: m0 |= mask; break;
+                case 1: m1 |= mask; break;
+                case 2: m2 |= mask; break;
+                case 3: m3 |= mask; break;
+                case 4: m4 |= mask; break;
+                case 5: m5 |= mask; break;
+                case 6: m6 |= mask; break;
+                default: m7 |= mask; break;
+            }
+        }
+        changed |= setBits(base, m0);
+        changed |= setBits(base + 1, m1);
+        changed |= setBits(base + 2, m2);
+        changed |= setBits(base + 3, m3);
+        changed |= setBits(base + 4, m4);
+        changed |= setBits(base + 5, m5);
+        changed |= setBits(base + 6, m6);
+        changed |= setBits(base + 7, m7);
+        return changed;
+    }
+
+    private boolean setBits(int index, long mask) {
+        if(mask == 0) {
+            return false;
+        }
+        while(true) {
+            long current = words.get(index);
+            if((current & mask) == mask) {
+                return false;
+            }
+            if(words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean mightContain(String key) {
+        return mightContainHash(MurmurHash.hash(key));
+    }
+
+    public boolean mightContain(byte[] key, int offset, int length) {
+        return mightContainHash(MurmurHash.hash(key, offset, length));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(MurmurHash.hash(key));
+    }
+
+    /**
+     * @return false表示key一定没有插入过，true表示key可能插入过
+     */
+    public boolean mightContainHash(long hash) {
+        int base = blockOf(hash);
+        int h1 = (int) hash;
+        int h2 = secondHash(h1);
+        for(int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & BLOCK_MASK;
+            if((words.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用hash的高32位乘以块数再取高32位选择块，避免取模运算
+     */
+    private int blockOf(long hash) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32) * BLOCK_WORDS;
+    }
+
+    /**
+     * 块内位置只用到 h1 与 h2 的低9位，h2取低32位中的高16位，与h1的低位以及选择块的高32位都不重叠
+     */
+    private static int secondHash(int h1) {
+        return (h1 >>> 16) | 1;
+    }
+
+    /**
+     * 合并另一个参数相同的过滤器，结果相当于两者插入过的key的并集
+     */
+    public void putAll(BlockedBloomFilter other) {
+        if(other.blockCount != blockCount || other.hashCount != hashCount) {
+            throw new IllegalArgumentException("filters are not compatible!");
+        }
+        for(int i = 0; i < words.length(); i++) {
+            setBits(i, other.words.get(i));
+        }
+    }
+
+    /**
+     * @return 按当前置位比例估计的误判率
+     */
+    public double expectedFalsePositiveRate() {
+        long bits = 0;
+        for(int i = 0; i < words.length(); i++) {
+            bits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) bits / bitSize(), hashCount);
+    }
+
+    public long bitSize() {
+        return (long) words.length() * 64;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 格式：magic(int) 块数(int) hash函数个数(int) 位数组(long * 块数 * 8)，均为大端序
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(blockCount);
+        data.writeInt(hashCount);
+        for(int i = 0; i < words.length(); i++) {
+            data.writeLong(words.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * 只读取过滤器本身的字节，不会越过过滤器读取流中后续的数据；流没有缓冲时建议调用方自行包装BufferedInputStream
+     */
+    public static BlockedBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if(data.readInt() != MAGIC) {
+            throw new IOException("not a blocked bloom filter!");
+        }
+        int blockCount = data.readInt();
+        int hashCount = data.readInt();
+        if(blockCount <= 0 || blockCount > Integer.MAX_VALUE / BLOCK_WORDS || hashCount <= 0 || hashCount > MAX_HASH_COUNT) {
+            throw new IOException("corrupted blocked bloom filter header!");
+        }
+        AtomicLongArray words = new AtomicLongArray(blockCount * BLOCK_WORDS);
+        for(int i = 0; i < words.length(); i++) {
+            words.set(i, data.readLong());
+        }
+        return new BlockedBloomFilter(blockCount, hashCount, words);
+    }
+}
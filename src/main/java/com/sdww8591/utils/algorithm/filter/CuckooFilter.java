@@ -0,0 +1,360 @@
+package com.sdww8591.utils.algorithm.filter;
+
+import com.sdww8591.utils.third.MurmurHash;
+import com.sdww8591.utils.third.MurmurHash3;
+
+import java.io.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 布谷鸟过滤器（Fan, Andersen, Kaminsky, Mitzenmacher）：支持删除的近似集合。
+ * 每个桶是一个long，存放4个16位的指纹（0表示空槽），key只可能出现在两个候选桶中：
+ * i1 = hash的低位，i2 = i1 ^ hash(指纹)，由任一候选桶和指纹都可以算出另一个，因此搬移时不需要原始key。
+ * <ul>
+ *     <li>查询只读两个long，最多两次cache miss，并用SWAR一次比较桶内的4个指纹，不加锁</li>
+ *     <li>候选桶有空槽时，插入是一次对桶的CAS，不加锁</li>
+ *     <li>两个候选桶都满时需要沿着踢出路径搬移指纹，搬移以及删除由一把锁串行化；搬移时先写入目标桶再覆盖原位置，
+ *     任意时刻每个指纹至少在一个候选桶中。查询先后读两个桶，中间恰好发生搬移时仍可能两边都错过，
+ *     因此搬移前后各递增一次版本号，查询未命中且版本号发生过变化时重新查询</li>
+ * </ul>
+ * 误判率约为 8 / 2^16，桶的装载率可以达到95%左右。同一个key插入多次后需要删除同样多次。
+ */
+public class CuckooFilter {
+
+    private static final int MAGIC = 0x43554B4F;
+
+    private static final int SLOTS = 4;
+
+    private static final int FINGERPRINT_BITS = 16;
+
+    private static final long FINGERPRINT_MASK = 0xFFFFL;
+
+    private static final long LOW_BITS = 0x0001000100010001L;
+
+    private static final long HIGH_BITS = 0x8000800080008000L;
+
+    private static final double LOAD_FACTOR = 0.95;
+
+    private static final int MAX_KICKS = 500;
+
+    private final AtomicLongArray buckets;
+
+    private final int bucketMask;
+
+    private final ReentrantLock relocationLock = new ReentrantLock();
+
+    /**
+     * 搬移期间为奇数，只在持有relocationLock时修改
+     */
+    private volatile int moveVersion;
+
+    /**
+     * 踢出路径，仅在持有relocationLock时使用
+     */
+    private final int[] pathBuckets = new int[MAX_KICKS + 1];
+
+    private final int[] pathSlots = new int[MAX_KICKS];
+
+    private final long[] pathFingerprints = new long[MAX_KICKS];
+
+    /**
+     * @param expectedInsertions 预计插入的key个数，桶数会向上取整为2的幂
+     */
+    public CuckooFilter(long expectedInsertions) {
+        if(expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expected insertions must be positive: " + expectedInsertions);
+        }
+        long bucketCount = Long.highestOneBit(Math.max(1, (long) Math.ceil(expectedInsertions / (SLOTS * LOAD_FACTOR))) * 2 - 1);
+        if(bucketCount > 1 << 30) {
+            throw new IllegalArgumentException("filter is too large: " + expectedInsertions);
+        }
+        this.buckets = new AtomicLongArray((int) bucketCount);
+        this.bucketMask = (int) bucketCount - 1;
+    }
+
+    private CuckooFilter(AtomicLongArray buckets) {
+        this.buckets = buckets;
+        this.bucketMask = buckets.length() - 1;
+    }
+
+    public boolean put(String key) {
+        return putHash(MurmurHash.hash(key));
+    }
+
+    public boolean put(byte[] key, int offset, int length) {
+        return putHash(MurmurHash.hash(key, offset, length));
+    }
+
+    public boolean put(long key) {
+        return putHash(MurmurHash.hash(key));
+    }
+
+    /**
+     * @return false表示过滤器已满（踢出次数超过上限），此时key没有被插入
+     */
+    public boolean putHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = alternate(i1, fingerprint);
+        if(insertIntoEmptySlot(i1, fingerprint) || insertIntoEmptySlot(i2, fingerprint)) {
+            return true;
+        }
+        relocationLock.lock();
+        try {
+            //拿锁期间其他线程可能删除了元素，先再试一次
+            if(insertIntoEmptySlot(i1, fingerprint) || insertIntoEmptySlot(i2, fingerprint)) {
+                return true;
+            }
+            return relocate(ThreadLocalRandom.current().nextBoolean() ? i1 : i2, fingerprint);
+        } finally {
+            relocationLock.unlock();
+        }
+    }
+
+    /**
+     * 随机游走找到一条以空槽结尾的踢出路径，然后从路径末端开始逐个搬移：
+     * 先把最后一个指纹复制到空槽，再用前一个指纹覆盖它原来的位置，依此类推，最后把新指纹写入起点。
+     * 路径上被覆盖的槽位只会被本方法修改（无锁插入只写空槽），所以只有末端空槽可能被并发插入抢走，此时重新寻找路径。
+     */
+    private boolean relocate(int start, long fingerprint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int attempt = 0; attempt < 4; attempt++) {
+            int bucket = start;
+            int length = 0;
+            int emptySlot = -1;
+            while(length < MAX_KICKS) {
+                int slot = random.nextInt(SLOTS);
+                long victim = slotValue(buckets.get(bucket), slot);
+                //路径在拿锁期间不会变化，随机游走回到路径上已有的槽位时去掉中间的环，保证每个槽位在路径上只出现一次
+                length = indexOnPath(length, bucket, slot);
+                pathBuckets[length] = bucket;
+                pathSlots[length] = slot;
+                pathFingerprints[length] = victim;
+                length++;
+                bucket = alternate(bucket, victim);
+                emptySlot = emptySlot(buckets.get(bucket));
+                if(emptySlot >= 0) {
+                    break;
+                }
+            }
+            if(emptySlot < 0) {
+                return false;
+            }
+            pathBuckets[length] = bucket;
+            moveVersion++;
+            try {
+                if(!replaceSlot(bucket, emptySlot, 0, pathFingerprints[length - 1])) {
+                    continue;
+                }
+                for(int i = length - 1; i > 0; i--) {
+                    replaceSlot(pathBuckets[i], pathSlots[i], pathFingerprints[i], pathFingerprints[i - 1]);
+                }
+                replaceSlot(pathBuckets[0], pathSlots[0], pathFingerprints[0], fingerprint);
+                return true;
+            } finally {
+                moveVersion++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return (bucket, slot)在路径中的下标，不在路径中时返回length
+     */
+    private int indexOnPath(int length, int bucket, int slot) {
+        for(int i = 0; i < length; i++) {
+            if(pathBuckets[i] == bucket && pathSlots[i] == slot) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    public boolean mightContain(String key) {
+        return mightContainHash(MurmurHash.hash(key));
+    }
+
+    public boolean mightContain(byte[] key, int offset, int length) {
+        return mightContainHash(MurmurHash.hash(key, offset, length));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(MurmurHash.hash(key));
+    }
+
+    public boolean mightContainHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = alternate(i1, fingerprint);
+        while(true) {
+            int version = moveVersion;
+            if(containsFingerprint(buckets.get(i1), fingerprint) || containsFingerprint(buckets.get(i2), fingerprint)) {
+                return true;
+            }
+            if((version & 1) == 0 && version == moveVersion) {
+                return false;
+            }
+        }
+    }
+
+    public boolean remove(String key) {
+        return removeHash(MurmurHash.hash(key));
+    }
+
+    public boolean remove(byte[] key, int offset, int length) {
+        return removeHash(MurmurHash.hash(key, offset, length));
+    }
+
+    public boolean remove(long key) {
+        return removeHash(MurmurHash.hash(key));
+    }
+
+    /**
+     * 删除一个指纹。只能删除确实插入过的key，否则可能删掉另一个指纹相同的key
+     * @return 是否找到并删除了指纹
+     */
+    public boolean removeHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = alternate(i1, fingerprint);
+        relocationLock.lock();
+        try {
+            return removeFromBucket(i1, fingerprint) || removeFromBucket(i2, fingerprint);
+        } finally {
+            relocationLock.unlock();
+        }
+    }
+
+    private boolean removeFromBucket(int bucket, long fingerprint) {
+        long word = buckets.get(bucket);
+        for(int slot = 0; slot < SLOTS; slot++) {
+            if(slotValue(word, slot) == fingerprint) {
+                return replaceSlot(bucket, slot, fingerprint, 0);
+            }
+        }
+        return false;
+    }
+
+    private boolean insertIntoEmptySlot(int bucket, long fingerprint) {
+        while(true) {
+            long word = buckets.get(bucket);
+            int slot = emptySlot(word);
+            if(slot < 0) {
+                return false;
+            }
+            if(buckets.compareAndSet(bucket, word, word | (fingerprint << (slot * FINGERPRINT_BITS)))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 将槽位的值由expected改为update，同一个桶中其他槽位的并发修改会导致CAS失败，此时重读后重试
+     * @return 槽位的值不是expected时返回false
+     */
+    private boolean replaceSlot(int bucket, int slot, long expected, long update) {
+        int shift = slot * FINGERPRINT_BITS;
+        while(true) {
+            long word = buckets.get(bucket);
+            if(slotValue(word, slot) != expected) {
+                return false;
+            }
+            long next = (word & ~(FINGERPRINT_MASK << shift)) | (update << shift);
+            if(buckets.compareAndSet(bucket, word, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static long slotValue(long word, int slot) {
+        return (word >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK;
+    }
+
+    /**
+     * @return 第一个空槽的序号，没有空槽时返回-1
+     */
+    private static int emptySlot(long word) {
+        long zeros = hasZeroSlot(word);
+        return zeros == 0 ? -1 : Long.numberOfTrailingZeros(zeros) / FINGERPRINT_BITS;
+    }
+
+    /**
+     * 经典的SWAR判零：最低的全零槽位对应的最高bit一定被置位，更高的槽位可能因借位被误置，只使用最低的置位
+     */
+    private static long hasZeroSlot(long word) {
+        return (word - LOW_BITS) & ~word & HIGH_BITS;
+    }
+
+    private static boolean containsFingerprint(long word, long fingerprint) {
+        return hasZeroSlot(word ^ (fingerprint * LOW_BITS)) != 0;
+    }
+
+    /**
+     * 取hash的高16位作为指纹，0保留为空槽
+     */
+    private static long fingerprint(long hash) {
+        long fingerprint = hash >>> (64 - FINGERPRINT_BITS);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * i ^ hash(指纹)，对i1与i2都成立，所以由任一候选桶都能算出另一个
+     */
+    private int alternate(int bucket, long fingerprint) {
+        return (bucket ^ (int) MurmurHash3.fmix64(fingerprint)) & bucketMask;
+    }
+
+    /**
+     * @return 非空槽位的个数，需要扫描整个过滤器，只用于监控
+     */
+    public long approximateCount() {
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            long word = buckets.get(i);
+            for(int slot = 0; slot < SLOTS; slot++) {
+                if(slotValue(word, slot) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public long capacity() {
+        return (long) buckets.length() * SLOTS;
+    }
+
+    /**
+     * 格式：magic(int) 桶数(int) 桶(long * 桶数)，均为大端序
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(buckets.length());
+        for(int i = 0; i < buckets.length(); i++) {
+            data.writeLong(buckets.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * 只读取过滤器本身的字节，不会越过过滤器读取流中后续的数据
+     */
+    public static CuckooFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if(data.readInt() != MAGIC) {
+            throw new IOException("not a cuckoo filter!");
+        }
+        int bucketCount = data.readInt();
+        if(bucketCount <= 0 || Integer.bitCount(bucketCount) != 1) {
+            throw new IOException("corrupted cuckoo filter header!");
+        }
+        AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+        for(int i = 0; i < bucketCount; i++) {
+            buckets.set(i, data.readLong());
+        }
+        return new CuckooFilter(buckets);
+    }
+}
@@ -1,299 +1,1422 @@
 package com.sdww8591.utils.algorithm.tree;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 红黑树是二叉平衡树的典型实现方式，许多数据结构都有应用，具体原理请参见{https://www.jianshu.com/p/37c845a5add6}
+ * <p>
+ * 本实现是一个完整的NavigableMap，插入与删除都使用自顶向下的单趟算法（Julienne Walker, "Red Black Trees"）：
+ * <ul>
+ *     <li>插入时沿查找路径向下，遇到两个子节点都是红色的节点就做一次颜色反转，产生的连续红色节点立即通过旋转修复，
+ *     到达底部时直接挂上新的红色节点，不需要再向上回溯</li>
+ *     <li>删除时沿查找路径向下，保证当前节点或其子节点始终为红色（push the red node down），
+ *     最终被摘除的节点一定是红色的叶子，同样不需要回溯</li>
+ *     <li>两者都只用常数个局部变量记录祖先节点，节点中没有parent指针，没有递归，也不会随树高占用额外的栈</li>
+ * </ul>
+ * 每个entry只分配一个Node，Node本身就是Map.Entry。删除时把前驱节点挪到被删除节点的位置，而不是复制key和value，
+ * 因此entrySet中拿到的Node在其他entry被删除后仍然有效。
+ * 迭代器使用显式的栈记录路径，按需展开，区间视图（subMap/headMap/tailMap/descendingMap）都是惰性的。
+ * 与TreeMap一样不是线程安全的，迭代过程中除了迭代器自己的remove之外的增删会抛出ConcurrentModificationException。
  * @param <K>
  * @param <V>
  */
-public class RedBlackTree<K extends Comparable, V> {
+public class RedBlackTree<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    /**
+     * 红黑树的高度不超过2*log2(n+1)，size为int时不会超过62
+     */
+    private static final int MAX_DEPTH = 64;
 
-    private static final Boolean BLACK = false;
+    private final Comparator<? super K> comparator;
 
-    private static final Boolean RED = true;
+    private Node<K, V> root;
 
-    private Node<K, V> root = null;
+    private int size;
+
+    /**
+     * 增删的次数，用于迭代器的fail-fast检查
+     */
+    private int modCount;
 
-    private class Node<K, V> {
+    /**
+     * 任何旋转或颜色变化都会增加，迭代器发现变化时重新计算自己的路径
+     */
+    private int structureVersion;
 
-        public K key;
+    /**
+     * 自顶向下算法使用的哑根节点，right指向root，复用同一个对象避免每次插入删除都额外分配
+     */
+    private final Node<K, V> header = new Node<>(null, null);
 
-        public V value;
+    private transient EntrySet entrySet;
 
-        public Boolean color;
+    private transient KeySet<K> navigableKeySet;
 
-        public Node<K, V> left;
+    private transient NavigableMap<K, V> descendingMap;
 
-        public Node<K, V> right;
+    public RedBlackTree() {
+        this.comparator = null;
+    }
 
-        public Node(K key, V value, Boolean color) {
+    /**
+     * @param comparator 为null时使用key的自然顺序
+     */
+    public RedBlackTree(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    public RedBlackTree(Map<? extends K, ? extends V> map) {
+        @SuppressWarnings("unchecked")
+        Comparator<? super K> sortedBy = map instanceof SortedMap ? ((SortedMap<K, ? extends V>) map).comparator() : null;
+        this.comparator = sortedBy;
+        putAll(map);
+    }
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+
+        K key;
+
+        V value;
+
+        Node<K, V> left;
+
+        Node<K, V> right;
+
+        /**
+         * 新节点总是红色
+         */
+        boolean red = true;
+
+        Node(K key, V value) {
             this.key = key;
             this.value = value;
-            this.color = color;
         }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return eq(key, e.getKey()) && eq(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static boolean eq(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
     }
 
     /**
      * 红黑树的null节点也视为BLACK
-     * @param node
-     * @return
      */
-    private Boolean isRed(Node<K, V> node) {
-        if(node == null) return BLACK;
-        return node.color;
+    private static boolean isRed(Node<?, ?> node) {
+        return node != null && node.red;
+    }
+
+    private static <K, V> Node<K, V> child(Node<K, V> node, boolean right) {
+        return right ? node.right : node.left;
+    }
+
+    private static <K, V> void setChild(Node<K, V> node, boolean right, Node<K, V> child) {
+        if(right) {
+            node.right = child;
+        } else {
+            node.left = child;
+        }
     }
 
     /**
-     * 左旋操作
-     * 对于典型A有一个红色右Node B的情况，转换为B为root, 有一个左NodeA，如下图：
+     * 向dir方向单旋：node的!dir子节点成为新的子树根，原子树根变为红色，新子树根变为黑色
+     * <pre>
+     * 以dir为左（false）为例：
      * A          B
      *  \   ->   /
      *   B      A
-     * @param node
-     * @return
+     * </pre>
      */
-    private Node<K, V> rotateLeft(Node<K, V> node) {
-        /*if(root == null
-                || root.right == null
-                || root.right.color == BLACK) {
-            throw new IllegalStateException();
-        }*/
-
-        Node<K, V> newNode = node.right;
-        node.right = newNode.left;
-        newNode.left = node;
-
-        newNode.color = node.color;
-        node.color = RED;
-        return newNode;
+    private static <K, V> Node<K, V> rotate(Node<K, V> node, boolean dir) {
+        Node<K, V> save = child(node, !dir);
+        setChild(node, !dir, child(save, dir));
+        setChild(save, dir, node);
+        node.red = true;
+        save.red = false;
+        return save;
     }
 
     /**
-     * 右旋操作，与左旋相反
-     * 对于典型A有一个红色左Node B的情况，转换为B为root, 有一个右Node A, 如下图：
-     *    A        B
-     *   /    ->    \
-     *  B            A
-     * @param node
-     * @return
+     * 双旋：先把!dir子节点向!dir方向单旋，再把node向dir方向单旋
      */
-    private Node<K, V> rotateRight(Node<K, V> node) {
-        /*if(root == null
-                || root.left == null
-                || root.left.color == BLACK) {
-            throw new IllegalStateException();
-        }*/
+    private static <K, V> Node<K, V> rotateTwice(Node<K, V> node, boolean dir) {
+        setChild(node, !dir, rotate(child(node, !dir), !dir));
+        return rotate(node, dir);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object k1, K k2) {
+        return comparator == null ? ((Comparable<? super K>) k1).compareTo(k2) : comparator.compare((K) k1, k2);
+    }
 
-        Node<K, V> newNode = node.left;
-        node.left = newNode.right;
-        newNode.right = node;
+    @Override
+    public int size() {
+        return size;
+    }
 
-        newNode.color = node.color;
-        node.color = RED;
-        return newNode;
+    @Override
+    public boolean containsKey(Object key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    Node<K, V> getNode(Object key) {
+        if(comparator != null) {
+            K k = (K) key;
+            Node<K, V> node = root;
+            while(node != null) {
+                int c = comparator.compare(k, node.key);
+                if(c < 0) {
+                    node = node.left;
+                } else if(c > 0) {
+                    node = node.right;
+                } else {
+                    return node;
+                }
+            }
+            return null;
+        }
+        if(key == null) {
+            throw new NullPointerException();
+        }
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Node<K, V> node = root;
+        while(node != null) {
+            int c = k.compareTo(node.key);
+            if(c < 0) {
+                node = node.left;
+            } else if(c > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
     }
 
     /**
-     * 颜色反转：如果一个Node的左右两个子Node颜色一致，则反转其颜色
-     * @param node
+     * 自顶向下插入。t、g、p、q分别为曾祖父、祖父、父节点和当前节点，
+     * 旋转发生在g上，因此需要t来接上旋转后的子树
      */
-    private void colorFlip(Node<K, V> node) {
-        /*if(node.left == null
-                || node.left.color == BLACK
-                || node.right == null
-                || node.right.color == BLACK) {
-            throw new IllegalStateException();
-        }*/
+    @Override
+    public V put(K key, V value) {
+        if(root == null) {
+            //检查key的类型以及是否为null
+            compare(key, key);
+            root = new Node<>(key, value);
+            root.red = false;
+            size = 1;
+            modCount++;
+            structureVersion++;
+            return null;
+        }
+        structureVersion++;
+        Node<K, V> head = header;
+        head.right = root;
+        Node<K, V> t = head;
+        Node<K, V> g = null;
+        Node<K, V> p = null;
+        Node<K, V> q = root;
+        boolean dir = false;
+        boolean last = false;
+        boolean inserted = false;
+        V old = null;
+        for(;;) {
+            if(q == null) {
+                q = new Node<>(key, value);
+                setChild(p, dir, q);
+                inserted = true;
+            } else if(isRed(q.left) && isRed(q.right)) {
+                //colorFlip，相当于一个4-Node分裂为两层，中间节点向上传递一层
+                q.red = true;
+                q.left.red = false;
+                q.right.red = false;
+            }
+            if(isRed(q) && isRed(p)) {
+                //连续两个红色节点：p是红色，所以g一定存在
+                boolean dir2 = t.right == g;
+                setChild(t, dir2, q == child(p, last) ? rotate(g, !last) : rotateTwice(g, !last));
+            }
+            if(inserted) {
+                break;
+            }
+            int c = compare(key, q.key);
+            if(c == 0) {
+                old = q.value;
+                q.value = value;
+                break;
+            }
+            last = dir;
+            dir = c > 0;
+            if(g != null) {
+                t = g;
+            }
+            g = p;
+            p = q;
+            q = child(q, dir);
+        }
+        root = head.right;
+        head.right = null;
+        root.red = false;
+        if(inserted) {
+            size++;
+            modCount++;
+        }
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = deleteKey(key);
+        return node == null ? null : node.value;
+    }
 
-        node.left.color = !node.left.color;
-        node.right.color = !node.right.color;
-        node.color = !node.color;
+    private void deleteNode(Node<K, V> node) {
+        deleteKey(node.key);
     }
 
     /**
-     * 红黑树的插入操作，返回结果为左倾红黑树
-     * @param node
-     * @param key
-     * @param value
-     * @return
+     * 自顶向下删除：沿着查找路径向下，保证q或者q的下一个子节点为红色，找到目标之后继续向左子树的最右端走，
+     * 最终q为目标节点的前驱（目标没有左子树时为目标本身），它一定是红色且最多只有一个子节点，可以直接摘除，
+     * 之后把q挪到目标节点的位置。key不存在时下降过程中的旋转和变色同样保持红黑树的性质。
+     * @return 被删除的节点，不存在时返回null
      */
-    public Node<K, V> insert(Node<K, V> node, K key, V value) {
-        //如果当前节点不存在
-        if(node == null) {
-            return new Node<>(key, value, RED);
+    private Node<K, V> deleteKey(Object key) {
+        if(root == null) {
+            return null;
         }
-
-        //找到了key相等的节点
-        int com = node.key.compareTo(key);
-        if(com == 0) {
-            node.value = value;
-            return node;
+        structureVersion++;
+        Node<K, V> head = header;
+        head.right = root;
+        Node<K, V> q = head;
+        Node<K, V> p = null;
+        Node<K, V> g;
+        //目标节点及其父节点，下降过程中的旋转可能改变目标的父节点
+        Node<K, V> f = null;
+        Node<K, V> fp = null;
+        boolean dir = true;
+        while(child(q, dir) != null) {
+            boolean last = dir;
+            g = p;
+            p = q;
+            q = child(q, dir);
+            int c = compare(key, q.key);
+            //找到目标之后c为0，dir为左，之后一直向右寻找前驱
+            dir = c > 0;
+            if(c == 0) {
+                f = q;
+                fp = p;
+            }
+            if(!isRed(q) && !isRed(child(q, dir))) {
+                if(isRed(child(q, !dir))) {
+                    Node<K, V> rotated = rotate(q, dir);
+                    setChild(p, last, rotated);
+                    p = rotated;
+                    if(q == f) {
+                        fp = rotated;
+                    }
+                } else {
+                    Node<K, V> sibling = child(p, !last);
+                    if(sibling != null) {
+                        if(!isRed(sibling.left) && !isRed(sibling.right)) {
+                            //反向colorFlip，p、q、sibling合并为一个4-Node
+                            p.red = false;
+                            sibling.red = true;
+                            q.red = true;
+                        } else {
+                            //sibling不为2-Node，向它借一个节点；sibling存在时p不是哑根，g一定存在
+                            boolean dir2 = g.right == p;
+                            Node<K, V> rotated = isRed(child(sibling, last)) ? rotateTwice(p, last) : rotate(p, last);
+                            setChild(g, dir2, rotated);
+                            q.red = true;
+                            rotated.red = true;
+                            rotated.left.red = false;
+                            rotated.right.red = false;
+                            if(p == f) {
+                                fp = rotated;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if(f != null) {
+            //摘除q
+            setChild(p, p.right == q, child(q, q.left == null));
+            if(q != f) {
+                q.left = f.left;
+                q.right = f.right;
+                q.red = f.red;
+                setChild(fp, fp.right == f, q);
+            }
+            f.left = null;
+            f.right = null;
+            size--;
+            modCount++;
+        }
+        root = head.right;
+        head.right = null;
+        if(root != null) {
+            root.red = false;
         }
+        return f;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        structureVersion++;
+        size = 0;
+        root = null;
+    }
 
-        //colorFlip，相当于一个4-Node分裂为两层，中间节点向上传递一层，剩余两个2-Node
-        if(isRed(node.left) && isRed(node.right)) {
-            colorFlip(node);
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    final Node<K, V> firstNode() {
+        Node<K, V> node = root;
+        if(node != null) {
+            while(node.left != null) {
+                node = node.left;
+            }
         }
+        return node;
+    }
 
-        //递归插入
-        if(com < 0) {
-            node.left = insert(node.left, key, value);
-        } else {
-            node.right = insert(node.right, key, value);
+    final Node<K, V> lastNode() {
+        Node<K, V> node = root;
+        if(node != null) {
+            while(node.right != null) {
+                node = node.right;
+            }
         }
+        return node;
+    }
 
-        //由于本例为左倾红黑树实现，因此遇到右倾的情况都需要需要转为左倾
-        if(isRed(node.right)) {
-            node = rotateLeft(node);
+    /**
+     * @return 大于等于key的最小节点
+     */
+    final Node<K, V> ceilingNode(Object key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while(node != null) {
+            int c = compare(key, node.key);
+            if(c < 0) {
+                best = node;
+                node = node.left;
+            } else if(c > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
         }
+        return best;
+    }
 
-        //连续两个左倾的情况，需要将其转为一个4-node，flip等下次插入时再做
-        if(isRed(node.left) && node.left != null && isRed(node.left.left)) {
-            node = rotateRight(node);
+    /**
+     * @return 大于key的最小节点
+     */
+    final Node<K, V> higherNode(Object key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while(node != null) {
+            if(compare(key, node.key) < 0) {
+                best = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
         }
-        return node;
+        return best;
     }
 
     /**
-     * 核心思路：为了保证红黑树的平衡性，则必须保证删除的节点为Red类型，遇到BLACK Node则需要想办法将其处理为RED Node
-     * 以删除红黑树最大节点为例：
-     * case 1：max Node 的color为RED，直接删除即可
-     * case 2: max Node 的color为BLACK
-     *  case 2-1: 在case 2 的基础上，max Node的兄弟节点为2-Node，此时只需要反向做一次colorflip即可（相当于max Node， max Node的兄弟， 以及max Node的直接parent共同组成了一个4-node）
-     *  case 2-2: 在case 2 的基础上，max Node的兄弟节点不为2-Node，此时需要将max Node，max Node的直接parent， 以及max Node的兄弟节点的最大值重新组合其结构，使得最后一个Node为3-node
-     *  总结：重新组合max Node、 max Node的parent、以及max Node 兄弟的最大值之间的关系。
-     * 除了删除之外，将删除后的结果处理回左倾红黑树也是其中关键之一
+     * @return 小于等于key的最大节点
      */
-    private void deleteMax() {
-        root = deleteMaxNode(root);
-        root.color = BLACK;
+    final Node<K, V> floorNode(Object key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while(node != null) {
+            int c = compare(key, node.key);
+            if(c > 0) {
+                best = node;
+                node = node.right;
+            } else if(c < 0) {
+                node = node.left;
+            } else {
+                return node;
+            }
+        }
+        return best;
     }
 
-    private Node<K, V> deleteMaxNode(Node<K, V> node) {
-        if(isRed(node.left)) {
-            node = rotateRight(node);
+    /**
+     * @return 小于key的最大节点
+     */
+    final Node<K, V> lowerNode(Object key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while(node != null) {
+            if(compare(key, node.key) > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
         }
-        //递归结束条件
-        //TODO:为啥这里只判断node.right，而不用判断node.left
-        //由红黑树性质第5点：从任一节点到其每个叶子的所有简单路径包含相同数目的黑色节点
-        //因此，如果最下面一层的节点仅含有单个孩子，则该孩子一定为红色！！
-        //所以这里仅需判断node.left即可（左倾红黑树）
-        if(node.left == null) {
-            return null;
+        return best;
+    }
+
+    /**
+     * 导航方法返回的entry是快照，不支持setValue
+     */
+    private static <K, V> Map.Entry<K, V> export(Node<K, V> node) {
+        return node == null ? null : new SimpleImmutableEntry<>(node);
+    }
+
+    private static <K> K keyOrNull(Node<K, ?> node) {
+        return node == null ? null : node.key;
+    }
+
+    private static <K> K key(Node<K, ?> node) {
+        if(node == null) {
+            throw new NoSuchElementException();
         }
-        //当前节点的右节点是自己的子节点，且子节点的颜色为BLACK
-        if(!isRed(node.right) && !isRed(node.right.left)) {
-            node = moveRedRight(node);
+        return node.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return export(lowerNode(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return export(floorNode(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return export(ceilingNode(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return export(higherNode(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return export(firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return export(lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        Node<K, V> node = firstNode();
+        Map.Entry<K, V> result = export(node);
+        if(node != null) {
+            deleteNode(node);
         }
-        node.right = deleteMaxNode(node.right);
-        fix(node);
-        return node;
+        return result;
     }
 
-    private Node<K, V> moveRedRight(Node<K, V> node) {
-        colorFlip(node);
-        if(isRed(node.left.left)) {
-            node = rotateRight(node);
-            colorFlip(node);
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        Node<K, V> node = lastNode();
+        Map.Entry<K, V> result = export(node);
+        if(node != null) {
+            deleteNode(node);
         }
-        return node;
+        return result;
     }
 
-    private void fix(Node<K, V> node) {
-        if(isRed(node.right)) {
-            node = rotateLeft(node);
+    @Override
+    public K firstKey() {
+        return key(firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return key(lastNode());
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        EntrySet set = entrySet;
+        return set == null ? (entrySet = new EntrySet()) : set;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> set = navigableKeySet;
+        return set == null ? (navigableKeySet = new KeySet<>(this)) : set;
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        NavigableMap<K, V> map = descendingMap;
+        return map == null ? (descendingMap = new SubMap(true, null, true, true, null, true, true)) : map;
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new SubMap(true, null, true, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap(false, fromKey, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator(firstNode(), false, null);
         }
-        if(isRed(node.left) && isRed(node.left.left)) {
-            node = rotateRight(node);
+
+        @Override
+        public int size() {
+            return size;
         }
-        if(isRed(node.left) && isRed(node.right)) {
-            colorFlip(node);
+
+        @Override
+        public boolean contains(Object o) {
+            if(!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Node<K, V> node = getNode(entry.getKey());
+            return node != null && eq(node.value, entry.getValue());
         }
-    }
 
-    //deleteMinNode,与deleteMax类似
-    private Node<K, V> deleteMinNode(Node<K, V> node) {
-        if(node.left == null) {
-            return null;
+        @Override
+        public boolean remove(Object o) {
+            if(!contains(o)) {
+                return false;
+            }
+            deleteKey(((Map.Entry<?, ?>) o).getKey());
+            return true;
         }
-        if(!isRed(node.left) && !isRed(node.left.left)) {
-            node = moveRedLeft(node);
+
+        @Override
+        public void clear() {
+            RedBlackTree.this.clear();
         }
-        node.left = deleteMinNode(node.left);
-        fix(node);
-        return node;
     }
 
     /**
-     * 无论只执行colorflip还是需要执行右旋后左旋，都隐含了一层默认含义:
-     * return的Node.value一定大于等于参数的node.value。这一点性质对于删除处十分有必要。
-     * @param node
-     * @return
+     * 按中序（descending时为逆中序）遍历的迭代器。栈中保存当前节点的祖先中还没有访问过的那些，
+     * 栈顶是离当前节点最近的一个；当前节点有右子树时，后继是右子树的最左节点，否则就是栈顶。
+     * 树的结构发生变化（迭代器自己的remove或者覆盖已有key的put）时，按下一个节点的key重新计算路径。
      */
-    private Node<K, V> moveRedLeft(Node<K, V> node) {
-        colorFlip(node);
-        if(isRed(node.right.left)) {
-            node.right = rotateRight(node.right);
-            node = rotateLeft(node);
-            colorFlip(node);
+    abstract class PathIterator<T> implements Iterator<T> {
+
+        @SuppressWarnings("unchecked")
+        private final Node<K, V>[] stack = (Node<K, V>[]) new Node<?, ?>[MAX_DEPTH];
+
+        private int depth;
+
+        private final boolean descending;
+
+        /**
+         * 遍历的范围，为null时遍历到最后
+         */
+        private final SubMap range;
+
+        private Node<K, V> next;
+
+        private Node<K, V> lastReturned;
+
+        private int expectedModCount = modCount;
+
+        private int expectedStructure = structureVersion;
+
+        PathIterator(Node<K, V> first, boolean descending, SubMap range) {
+            this.descending = descending;
+            this.range = range;
+            if(first != null && !beyond(first)) {
+                next = first;
+                rebuild(first);
+            }
+        }
+
+        private boolean beyond(Node<K, V> node) {
+            return range != null && (descending ? range.tooLow(node.key) : range.tooHigh(node.key));
+        }
+
+        private void rebuild(Node<K, V> target) {
+            depth = 0;
+            Node<K, V> node = root;
+            while(node != target) {
+                boolean right = compare(target.key, node.key) > 0;
+                if(right == descending) {
+                    stack[depth++] = node;
+                }
+                node = child(node, right);
+            }
+        }
+
+        private Node<K, V> successor(Node<K, V> node) {
+            Node<K, V> n = child(node, !descending);
+            if(n != null) {
+                Node<K, V> c;
+                while((c = child(n, descending)) != null) {
+                    stack[depth++] = n;
+                    n = c;
+                }
+                return n;
+            }
+            return depth == 0 ? null : stack[--depth];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            Node<K, V> node = next;
+            if(node == null) {
+                throw new NoSuchElementException();
+            }
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(structureVersion != expectedStructure) {
+                rebuild(node);
+                expectedStructure = structureVersion;
+            }
+            next = successor(node);
+            if(next != null && beyond(next)) {
+                next = null;
+            }
+            lastReturned = node;
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if(lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            deleteNode(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class EntryIterator extends PathIterator<Map.Entry<K, V>> {
+
+        EntryIterator(Node<K, V> first, boolean descending, SubMap range) {
+            super(first, descending, range);
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            return nextNode();
+        }
+    }
+
+    final class KeyIterator extends PathIterator<K> {
+
+        KeyIterator(Node<K, V> first, boolean descending, SubMap range) {
+            super(first, descending, range);
+        }
+
+        @Override
+        public K next() {
+            return nextNode().key;
         }
-        return node;
     }
 
     /**
-     * 终于到了删除这一步，红黑树的删除将基于deleteMax与deleteMin方法实现
-     * 总的来说，为了保证数据结构红黑树的平衡性，所有的删除操作必须作用于Red 叶子节点！
-     * 因此，对于任意节点的删除思路为：
-     * 1. 找到将要被删除的节点
-     * 2. 将该节点右子树的最小值copy到当前节点处
-     * 3. 对节点右子树执行deleteMin（）
+     * 区间视图，lo/hi始终是按照树本身的升序给出的边界，descending只影响视图对外呈现的顺序
      */
-    private Node<K, V> delete(K key, Node<K, V> node) {
+    final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
 
-        if(root == null) {
-            return null;
+        private final boolean fromStart;
+
+        private final K lo;
+
+        private final boolean loInclusive;
+
+        private final boolean toEnd;
+
+        private final K hi;
+
+        private final boolean hiInclusive;
+
+        private final boolean descending;
+
+        private transient Set<Map.Entry<K, V>> entrySetView;
+
+        private transient KeySet<K> keySetView;
+
+        SubMap(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive,
+               boolean descending) {
+            if(!fromStart && !toEnd) {
+                if(compare(lo, hi) > 0) {
+                    throw new IllegalArgumentException("fromKey > toKey");
+                }
+            } else {
+                //检查key的类型以及是否为null
+                if(!fromStart) {
+                    compare(lo, lo);
+                }
+                if(!toEnd) {
+                    compare(hi, hi);
+                }
+            }
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
         }
 
-        int com = key.compareTo(node.key);
-        if(com < 0) {
-            if(!isRed(node.left) && !isRed(node.left.left)) {
-                node = moveRedLeft(node);
-                node.left = delete(key, node.left);
+        boolean tooLow(Object key) {
+            if(!fromStart) {
+                int c = compare(key, lo);
+                return c < 0 || (c == 0 && !loInclusive);
             }
-        } else {
-            if(isRed(node.left)) {
-                node = rotateRight(node);
+            return false;
+        }
+
+        boolean tooHigh(Object key) {
+            if(!toEnd) {
+                int c = compare(key, hi);
+                return c > 0 || (c == 0 && !hiInclusive);
             }
-            if(isRed(node) && node.right == null) {
-                return null;
+            return false;
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        /**
+         * 不考虑边界是否包含，用于检查子视图的边界
+         */
+        @SuppressWarnings("unchecked")
+        private boolean inClosedRange(Object key) {
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(hi, (K) key) >= 0);
+        }
+
+        private boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        private Node<K, V> absLowest() {
+            Node<K, V> node = fromStart ? firstNode() : (loInclusive ? ceilingNode(lo) : higherNode(lo));
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        private Node<K, V> absHighest() {
+            Node<K, V> node = toEnd ? lastNode() : (hiInclusive ? floorNode(hi) : lowerNode(hi));
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        private Node<K, V> absCeiling(Object key) {
+            if(tooLow(key)) {
+                return absLowest();
             }
-            if(!isRed(node.right) && !isRed(node.right.left)) {
-                node = moveRedRight(node);
+            Node<K, V> node = ceilingNode(key);
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        private Node<K, V> absHigher(Object key) {
+            if(tooLow(key)) {
+                return absLowest();
             }
-            //经过旋转之后，当前的node节点已不再是原来的node节点，因此要进行比较
-            if(key.compareTo(node.key) == 0){
-                Node<K, V> target = min(node.right);
-                node.key = target.key;
-                node.value = target.value;
-                node.right = deleteMinNode(node.right);
-            } else {
-                node.right = delete(key, node.right);
+            Node<K, V> node = higherNode(key);
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        private Node<K, V> absFloor(Object key) {
+            if(tooHigh(key)) {
+                return absHighest();
             }
+            Node<K, V> node = floorNode(key);
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        private Node<K, V> absLower(Object key) {
+            if(tooHigh(key)) {
+                return absHighest();
+            }
+            Node<K, V> node = lowerNode(key);
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        private Node<K, V> first() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        private Node<K, V> last() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        @Override
+        public int size() {
+            if(fromStart && toEnd) {
+                return size;
+            }
+            int count = 0;
+            for(Iterator<Map.Entry<K, V>> it = entrySet().iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && RedBlackTree.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? RedBlackTree.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if(!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return RedBlackTree.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? RedBlackTree.this.remove(key) : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Comparator<? super K> comparator() {
+            if(descending) {
+                return Collections.reverseOrder((Comparator<K>) comparator);
+            }
+            return comparator;
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return export(descending ? absHigher(key) : absLower(key));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(descending ? absHigher(key) : absLower(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return export(descending ? absCeiling(key) : absFloor(key));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(descending ? absCeiling(key) : absFloor(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return export(descending ? absFloor(key) : absCeiling(key));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(descending ? absFloor(key) : absCeiling(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return export(descending ? absLower(key) : absHigher(key));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(descending ? absLower(key) : absHigher(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return export(first());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return export(last());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            Node<K, V> node = first();
+            Map.Entry<K, V> result = export(node);
+            if(node != null) {
+                deleteNode(node);
+            }
+            return result;
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            Node<K, V> node = last();
+            Map.Entry<K, V> result = export(node);
+            if(node != null) {
+                deleteNode(node);
+            }
+            return result;
+        }
+
+        @Override
+        public K firstKey() {
+            return key(first());
+        }
+
+        @Override
+        public K lastKey() {
+            return key(last());
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            Set<Map.Entry<K, V>> set = entrySetView;
+            if(set == null) {
+                set = new AbstractSet<Map.Entry<K, V>>() {
+                    @Override
+                    public Iterator<Map.Entry<K, V>> iterator() {
+                        return new EntryIterator(first(), descending, SubMap.this);
+                    }
+
+                    @Override
+                    public int size() {
+                        return SubMap.this.size();
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return SubMap.this.isEmpty();
+                    }
+
+                    @Override
+                    public boolean contains(Object o) {
+                        if(!(o instanceof Map.Entry)) {
+                            return false;
+                        }
+                        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                        Object key = entry.getKey();
+                        if(!inRange(key)) {
+                            return false;
+                        }
+                        Node<K, V> node = getNode(key);
+                        return node != null && eq(node.value, entry.getValue());
+                    }
+
+                    @Override
+                    public boolean remove(Object o) {
+                        if(!contains(o)) {
+                            return false;
+                        }
+                        deleteKey(((Map.Entry<?, ?>) o).getKey());
+                        return true;
+                    }
+                };
+                entrySetView = set;
+            }
+            return set;
+        }
+
+        /**
+         * 供KeySet使用，避免先创建entry迭代器再取key
+         */
+        Iterator<K> keyIterator() {
+            return new KeyIterator(first(), descending, this);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            KeySet<K> set = keySetView;
+            return set == null ? (keySetView = new KeySet<>(this)) : set;
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if(!inRange(fromKey, fromInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if(!inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return descending
+                    ? new SubMap(false, toKey, toInclusive, false, fromKey, fromInclusive, true)
+                    : new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if(!inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return descending
+                    ? new SubMap(false, toKey, inclusive, toEnd, hi, hiInclusive, true)
+                    : new SubMap(fromStart, lo, loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if(!inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            return descending
+                    ? new SubMap(fromStart, lo, loInclusive, false, fromKey, inclusive, true)
+                    : new SubMap(false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
         }
-        fix(node);
-        return node;
     }
 
     /**
-     * 最小值
-     * @param node
-     * @return
+     * NavigableMap的key视图，所有操作都委托给map
      */
-    private Node<K, V> min(Node<K, V> node) {
-        if(node == null) return null;
-        while(node.left != null) {
-            node = node.left;
+    static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+        private final NavigableMap<E, ?> map;
+
+        KeySet(NavigableMap<E, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if(map instanceof RedBlackTree) {
+                RedBlackTree<E, ?> tree = (RedBlackTree<E, ?>) map;
+                return tree.keyIterator();
+            }
+            return ((RedBlackTree<E, ?>.SubMap) map).keyIterator();
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if(!map.containsKey(o)) {
+                return false;
+            }
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public E first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public E last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public E lower(E e) {
+            return map.lowerKey(e);
+        }
+
+        @Override
+        public E floor(E e) {
+            return map.floorKey(e);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return map.ceilingKey(e);
+        }
+
+        @Override
+        public E higher(E e) {
+            return map.higherKey(e);
+        }
+
+        @Override
+        public E pollFirst() {
+            Map.Entry<E, ?> entry = map.pollFirstEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public E pollLast() {
+            Map.Entry<E, ?> entry = map.pollLastEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator(firstNode(), false, null);
+    }
+
+    /**
+     * 供测试检查红黑树的性质
+     */
+    Node<K, V> root() {
+        return root;
+    }
+
+    /**
+     * 对比与TreeMap的随机插入、查找和删除耗时
+     */
+    public static void main(String[] args) {
+        int count = 1 << 20;
+        Integer[] keys = new Integer[count];
+        Random random = new Random(42);
+        for(int i = 0; i < count; i++) {
+            keys[i] = random.nextInt();
+        }
+        for(int round = 0; round < 5; round++) {
+            long[] tree = run(new RedBlackTree<Integer, Integer>(), keys);
+            long[] treeMap = run(new TreeMap<Integer, Integer>(), keys);
+            System.out.println(count + " keys, RedBlackTree put/get/remove: " + tree[0] + "/" + tree[1] + "/" + tree[2]
+                    + "ms, TreeMap: " + treeMap[0] + "/" + treeMap[1] + "/" + treeMap[2] + "ms");
         }
-        return node;
     }
-}
 
+    private static long[] run(NavigableMap<Integer, Integer> map, Integer[] keys) {
+        long[] millis = new long[3];
+        long start = System.nanoTime();
+        for(Integer key : keys) {
+            map.put(key, key);
+        }
+        long put = System.nanoTime();
+        long sum = 0;
+        for(Integer key : keys) {
+            sum += map.get(key);
+        }
+        long get = System.nanoTime();
+        for(Integer key : keys) {
+            map.remove(key);
+        }
+        long remove = System.nanoTime();
+        if(sum == 42 || !map.isEmpty()) {
+            System.out.println(sum);
+        }
+        millis[0] = TimeUnit.NANOSECONDS.toMillis(put - start);
+        millis[1] = TimeUnit.NANOSECONDS.toMillis(get - put);
+        millis[2] = TimeUnit.NANOSECONDS.toMillis(remove - get);
+        return millis;
+    }
+}
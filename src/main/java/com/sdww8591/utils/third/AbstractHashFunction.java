@@ -0,0 +1,81 @@
+package com.sdww8591.utils.third;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 只需实现hash(byte[], int, int)的HashFunction骨架：
+ * String按UTF-8编码、long按小端序、direct ByteBuffer按顺序写入线程私有的缓冲区后再计算，
+ * 缓冲区随最长的key增长并被反复使用，稳定运行后不再分配对象。
+ * 算法本身可以直接处理这些输入时应当覆盖对应的方法。
+ */
+public abstract class AbstractHashFunction implements HashFunction {
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64];
+        }
+    };
+
+    @Override
+    public long hash(String key) {
+        int length = key.length();
+        byte[] buffer = scratch(length * 3);
+        int n = 0;
+        for(int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if(c < 0x80) {
+                buffer[n++] = (byte) c;
+            } else if(c < 0x800) {
+                buffer[n++] = (byte) (0xc0 | (c >> 6));
+                buffer[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if(!Character.isSurrogate(c)) {
+                buffer[n++] = (byte) (0xe0 | (c >> 12));
+                buffer[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                buffer[n++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[n++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                //不成对的surrogate与String.getBytes一样编码为'?'
+                buffer[n++] = '?';
+            }
+        }
+        return hash(buffer, 0, n);
+    }
+
+    @Override
+    public long hash(long key) {
+        byte[] buffer = scratch(8);
+        for(int i = 0; i < 8; i++) {
+            buffer[i] = (byte) (key >>> (i * 8));
+        }
+        return hash(buffer, 0, 8);
+    }
+
+    @Override
+    public long hash(ByteBuffer buffer) {
+        int position = buffer.position();
+        int length = buffer.remaining();
+        if(buffer.hasArray()) {
+            return hash(buffer.array(), buffer.arrayOffset() + position, length);
+        }
+        byte[] bytes = scratch(length);
+        for(int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return hash(bytes, 0, length);
+    }
+
+    private static byte[] scratch(int capacity) {
+        byte[] buffer = SCRATCH.get();
+        if(buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+            SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+}
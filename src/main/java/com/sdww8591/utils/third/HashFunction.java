@@ -0,0 +1,29 @@
+package com.sdww8591.utils.third;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64位hash函数，供一致性hash等路由组件选择具体算法。
+ * 实现类必须是无状态、线程安全的，且对同样的输入在任何JVM中都给出同样的结果；
+ * String一律按UTF-8编码计算，计算过程不应分配对象。
+ * 常用实现见HashFunctions。
+ */
+public interface HashFunction {
+
+    long hash(byte[] data, int offset, int length);
+
+    /**
+     * 与hash(key.getBytes("UTF-8"), 0, len)结果一致
+     */
+    long hash(String key);
+
+    /**
+     * 与对key的8个小端序字节计算hash结果一致
+     */
+    long hash(long key);
+
+    /**
+     * 对buffer中position到limit之间的字节计算hash，不修改buffer的状态
+     */
+    long hash(ByteBuffer buffer);
+}
@@ -0,0 +1,146 @@
+package com.sdww8591.utils.third;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 常用HashFunction的工厂方法，所有实现都带seed、线程安全且不分配对象。
+ * 四种算法在测试中的HashFunctionQualityTest上质量相当，选择时以HashFunctionBenchmark在目标机器上的结果为准：
+ * <ul>
+ *     <li>murmur64A：与历史版本完全兼容，已有的hash环、持久化的hash值不会变化；String直接在char上计算，不经过编码缓冲区</li>
+ *     <li>murmur3：MurmurHash3 x64_128的低64位，用于与其他语言的MurmurHash3实现互通</li>
+ *     <li>xxHash64、wyHash：与C/Go等语言中广泛使用的实现结果一致，便于跨语言路由；
+ *     Java 7只能逐字节拼出long，也没有128位乘法，它们在C中的速度优势在这里并不明显</li>
+ * </ul>
+ */
+public final class HashFunctions {
+
+    private static final HashFunction MURMUR_64A = new Murmur64A(MurmurHash.SEED);
+
+    private HashFunctions() {
+    }
+
+    /**
+     * 默认的MurmurHash64A，seed为0x1234ABCD，结果与MurmurHash中的静态方法完全一致
+     */
+    public static HashFunction murmur64A() {
+        return MURMUR_64A;
+    }
+
+    public static HashFunction murmur64A(long seed) {
+        return seed == MurmurHash.SEED ? MURMUR_64A : new Murmur64A(seed);
+    }
+
+    public static HashFunction murmur3(int seed) {
+        return new Murmur3(seed);
+    }
+
+    public static HashFunction xxHash64(long seed) {
+        return new XxHash(seed);
+    }
+
+    public static HashFunction wyHash(long seed) {
+        return new Wy(seed);
+    }
+
+    private static final class Murmur64A extends AbstractHashFunction {
+
+        private final long seed;
+
+        private Murmur64A(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long hash(byte[] data, int offset, int length) {
+            return MurmurHash.hash(data, offset, length, seed);
+        }
+
+        @Override
+        public long hash(String key) {
+            return MurmurHash.hash(key, seed);
+        }
+
+        @Override
+        public long hash(long key) {
+            return MurmurHash.hash(key, seed);
+        }
+
+        @Override
+        public long hash(ByteBuffer buffer) {
+            //MurmurHash.hash(ByteBuffer)只支持默认seed
+            return seed == MurmurHash.SEED ? MurmurHash.hash(buffer) : super.hash(buffer);
+        }
+
+        @Override
+        public String toString() {
+            return "murmur64A(" + seed + ")";
+        }
+    }
+
+    private static final class Murmur3 extends AbstractHashFunction {
+
+        private final int seed;
+
+        private Murmur3(int seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long hash(byte[] data, int offset, int length) {
+            return MurmurHash3.hash64(data, offset, length, seed);
+        }
+
+        @Override
+        public String toString() {
+            return "murmur3(" + seed + ")";
+        }
+    }
+
+    private static final class XxHash extends AbstractHashFunction {
+
+        private final long seed;
+
+        private XxHash(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long hash(byte[] data, int offset, int length) {
+            return XxHash64.hash(data, offset, length, seed);
+        }
+
+        @Override
+        public long hash(long key) {
+            return XxHash64.hash(key, seed);
+        }
+
+        @Override
+        public String toString() {
+            return "xxHash64(" + seed + ")";
+        }
+    }
+
+    private static final class Wy extends AbstractHashFunction {
+
+        private final long seed;
+
+        private Wy(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long hash(byte[] data, int offset, int length) {
+            return WyHash.hash(data, offset, length, seed);
+        }
+
+        @Override
+        public long hash(long key) {
+            return WyHash.hash(key, seed);
+        }
+
+        @Override
+        public String toString() {
+            return "wyHash(" + seed + ")";
+        }
+    }
+}
@@ -6,57 +6,250 @@ import java.nio.ByteOrder;
 
 /**
  * Created by wangxuan on 2017/5/25.
+ * MurmurHash64A：直接按小端序从byte[]、堆内ByteBuffer以及direct ByteBuffer（包括MappedByteBuffer）中读取long，
+ * 计算过程不分配对象，也不修改buffer的状态；需要128位hash值时使用MurmurHash3。
  */
 public class MurmurHash {
 
+    static final long SEED = 0x1234ABCD;
+
+    static final long M = 0xc6a4a7935bd1e995L;
+
+    private static final int R = 47;
+
     /**
-     * murmur hash算法实现
+     * murmur hash算法实现（MurmurHash64A，seed为0x1234ABCD）
      */
-    public static Long hash(byte[] key) {
-
-        ByteBuffer buf = ByteBuffer.wrap(key);
-        int seed = 0x1234ABCD;
+    public static long hash(byte[] key) {
+        return hash(key, 0, key.length);
+    }
 
-        ByteOrder byteOrder = buf.order();
-        buf.order(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * 对key的UTF-8编码计算murmur hash，结果与hash(key.getBytes("UTF-8"))一致，与平台默认字符集无关。
+     * 编码过程直接在char上完成并送入混合循环，不产生中间数组；不成对的surrogate与String.getBytes一样编码为'?'
+     */
+    public static long hash(String key) {
+        return hash(key, SEED);
+    }
 
-        long m = 0xc6a4a7935bd1e995L;
-        int r = 47;
+    /**
+     * 使用指定seed对key的UTF-8编码计算murmur hash
+     */
+    public static long hash(String key, long seed) {
+        int length = key.length();
+        //先计算UTF-8编码后的长度，MurmurHash64A初始化时需要用到
+        int utf8Length = length;
+        boolean ascii = true;
+        for(int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if(c < 0x80) {
+                continue;
+            }
+            ascii = false;
+            if(c < 0x800) {
+                utf8Length += 1;
+            } else if(!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(key.charAt(i + 1))) {
+                //一对surrogate共2个char，编码为4个字节
+                utf8Length += 2;
+                i++;
+            }
+        }
+        long h = seed ^ (utf8Length * M);
+        if(ascii) {
+            //纯ASCII，每个char恰好对应一个字节
+            int end = length & ~7;
+            for(int i = 0; i < end; i += 8) {
+                h = mix(h, (key.charAt(i) & 0xffL)
+                        | (key.charAt(i + 1) & 0xffL) << 8
+                        | (key.charAt(i + 2) & 0xffL) << 16
+                        | (key.charAt(i + 3) & 0xffL) << 24
+                        | (key.charAt(i + 4) & 0xffL) << 32
+                        | (key.charAt(i + 5) & 0xffL) << 40
+                        | (key.charAt(i + 6) & 0xffL) << 48
+                        | (key.charAt(i + 7) & 0xffL) << 56);
+            }
+            if(end < length) {
+                long tail = 0;
+                for(int i = length - 1; i >= end; i--) {
+                    tail = (tail << 8) | (key.charAt(i) & 0xffL);
+                }
+                h ^= tail;
+                h *= M;
+            }
+            return finish(h);
+        }
 
-        long h = seed ^ (buf.remaining() * m);
+        long word = 0;
+        int bits = 0;
+        for(int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            //encoded按小端序存放当前字符的UTF-8编码，第一个字节位于最低位
+            long encoded;
+            int encodedBits;
+            if(c < 0x80) {
+                encoded = c;
+                encodedBits = 8;
+            } else if(c < 0x800) {
+                encoded = (0xC0 | c >> 6) | (0x80 | c & 0x3F) << 8;
+                encodedBits = 16;
+            } else if(!Character.isSurrogate(c)) {
+                encoded = (0xE0 | c >> 12) | (0x80 | c >> 6 & 0x3F) << 8 | (0x80 | c & 0x3F) << 16;
+                encodedBits = 24;
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                encoded = (0xF0 | codePoint >> 18)
+                        | (0x80 | codePoint >> 12 & 0x3F) << 8
+                        | (0x80 | codePoint >> 6 & 0x3F) << 16
+                        | (long) (0x80 | codePoint & 0x3F) << 24;
+                encodedBits = 32;
+            } else {
+                encoded = '?';
+                encodedBits = 8;
+            }
+            word |= encoded << bits;
+            bits += encodedBits;
+            if(bits >= 64) {
+                h = mix(h, word);
+                bits -= 64;
+                //当前字符没能放进word的高位部分留到下一个word
+                word = bits == 0 ? 0 : encoded >>> (encodedBits - bits);
+            }
+        }
+        if(bits > 0) {
+            h ^= word;
+            h *= M;
+        }
+        return finish(h);
+    }
 
-        long k;
-        while (buf.remaining() >= 8) {
-            k = buf.getLong();
+    /**
+     * 对key的char序列按UTF-16LE计算murmur hash，每4个char恰好组成一个long，不需要编码，适合非ASCII字符较多的key。
+     * 对合法的字符串结果与hash(key.getBytes("UTF-16LE"))一致；不成对的surrogate按原样参与计算，而getBytes会将其替换为U+FFFD
+     */
+    public static long hashUtf16(String key) {
+        int length = key.length();
+        long h = SEED ^ (2L * length * M);
+        int end = length & ~3;
+        for(int i = 0; i < end; i += 4) {
+            h = mix(h, (long) key.charAt(i)
+                    | (long) key.charAt(i + 1) << 16
+                    | (long) key.charAt(i + 2) << 32
+                    | (long) key.charAt(i + 3) << 48);
+        }
+        if(end < length) {
+            long tail = 0;
+            for(int i = length - 1; i >= end; i--) {
+                tail = (tail << 16) | key.charAt(i);
+            }
+            h ^= tail;
+            h *= M;
+        }
+        return finish(h);
+    }
 
-            k *= m;
-            k ^= k >>> r;
-            k *= m;
+    /**
+     * 对key[offset, offset + length)计算murmur hash，结果与对该区间拷贝出的byte[]调用hash(byte[])一致，
+     * 直接按小端序从数组中读取long，不分配任何对象
+     */
+    public static long hash(byte[] key, int offset, int length) {
+        return hash(key, offset, length, SEED);
+    }
 
-            h ^= k;
-            h *= m;
+    /**
+     * 使用指定seed对key[offset, offset + length)计算murmur hash
+     */
+    public static long hash(byte[] key, int offset, int length, long seed) {
+        if(offset < 0 || length < 0 || offset > key.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
         }
+        long h = seed ^ (length * M);
+        int end = offset + (length & ~7);
+        for(int i = offset; i < end; i += 8) {
+            h = mix(h, getLongLittleEndian(key, i));
+        }
+        int remaining = length & 7;
+        if(remaining > 0) {
+            long tail = 0;
+            for(int i = remaining - 1; i >= 0; i--) {
+                tail = (tail << 8) | (key[end + i] & 0xffL);
+            }
+            h ^= tail;
+            h *= M;
+        }
+        return finish(h);
+    }
 
-        if (buf.remaining() > 0) {
-            ByteBuffer finish = ByteBuffer.allocate(8).order(
-                    ByteOrder.LITTLE_ENDIAN);
-            // for big-endian version, do this first:
-            // finish.position(8-buf.remaining());
-            finish.put(buf).rewind();
-            h ^= finish.getLong();
-            h *= m;
+    /**
+     * 对buffer中position到limit之间的字节计算murmur hash，不修改buffer的position、limit与字节序。
+     * 堆内buffer直接读取底层数组，direct buffer（包括MappedByteBuffer）使用绝对位置读取，均不分配对象
+     */
+    public static long hash(ByteBuffer buffer) {
+        int position = buffer.position();
+        int length = buffer.remaining();
+        if(buffer.hasArray()) {
+            return hash(buffer.array(), buffer.arrayOffset() + position, length);
+        }
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long h = SEED ^ (length * M);
+        int end = position + (length & ~7);
+        for(int i = position; i < end; i += 8) {
+            long k = buffer.getLong(i);
+            h = mix(h, bigEndian ? Long.reverseBytes(k) : k);
         }
+        int remaining = length & 7;
+        if(remaining > 0) {
+            long tail = 0;
+            for(int i = remaining - 1; i >= 0; i--) {
+                tail = (tail << 8) | (buffer.get(end + i) & 0xffL);
+            }
+            h ^= tail;
+            h *= M;
+        }
+        return finish(h);
+    }
 
-        h ^= h >>> r;
-        h *= m;
-        h ^= h >>> r;
+    /**
+     * 对long型key的8个小端序字节计算murmur hash，适用于已经是数字ID的key
+     */
+    public static long hash(long key) {
+        return hash(key, SEED);
+    }
+
+    /**
+     * 使用指定seed对long型key计算murmur hash
+     */
+    public static long hash(long key, long seed) {
+        return finish(mix(seed ^ (8 * M), key));
+    }
+
+    static long mix(long h, long k) {
+        k *= M;
+        k ^= k >>> R;
+        k *= M;
+
+        h ^= k;
+        h *= M;
+        return h;
+    }
 
-        buf.order(byteOrder);
+    static long finish(long h) {
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
         return h;
     }
 
-    public static Long hash(String key) {
-        return hash(key.getBytes());
+    static long getLongLittleEndian(byte[] key, int i) {
+        return (key[i] & 0xffL)
+                | (key[i + 1] & 0xffL) << 8
+                | (key[i + 2] & 0xffL) << 16
+                | (key[i + 3] & 0xffL) << 24
+                | (key[i + 4] & 0xffL) << 32
+                | (key[i + 5] & 0xffL) << 40
+                | (key[i + 6] & 0xffL) << 48
+                | (key[i + 7] & 0xffL) << 56;
     }
 
 
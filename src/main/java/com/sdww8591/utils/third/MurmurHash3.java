@@ -0,0 +1,156 @@
+package com.sdww8591.utils.third;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * MurmurHash3 x64_128，输出128位hash值，适用于Bloom Filter、去重等需要更宽hash值的场景。
+ * 与MurmurHash一样直接读取byte[]与各类ByteBuffer，结果写入调用方提供的long[2]中，计算过程不分配对象。
+ * 输出与参考实现一致：out[0]、out[1]分别为参考实现输出的前8个字节与后8个字节按小端序解释得到的long。
+ */
+public class MurmurHash3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * @param key 数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param seed 种子，参考实现中为32位无符号整数
+     * @param out 长度至少为2的输出数组
+     */
+    public static void hash128(byte[] key, int offset, int length, int seed, long[] out) {
+        hash(key, offset, length, seed, out);
+    }
+
+    /**
+     * @return 128位结果中的低64位（即hash128输出的out[0]），不需要输出数组
+     */
+    public static long hash64(byte[] key, int offset, int length, int seed) {
+        return hash(key, offset, length, seed, null);
+    }
+
+    private static long hash(byte[] key, int offset, int length, int seed, long[] out) {
+        if(offset < 0 || length < 0 || offset > key.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+        long h1 = seed & 0xffffffffL;
+        long h2 = h1;
+        int end = offset + (length & ~15);
+        for(int i = offset; i < end; i += 16) {
+            long k1 = MurmurHash.getLongLittleEndian(key, i);
+            long k2 = MurmurHash.getLongLittleEndian(key, i + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int remaining = length & 15;
+        long k1 = 0;
+        long k2 = 0;
+        for(int i = remaining - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (key[end + i] & 0xffL);
+        }
+        for(int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (key[end + i] & 0xffL);
+        }
+        return finish(h1, h2, k1, k2, length, out);
+    }
+
+    public static void hash128(byte[] key, int seed, long[] out) {
+        hash128(key, 0, key.length, seed, out);
+    }
+
+    /**
+     * 对buffer中position到limit之间的字节计算hash，不修改buffer的position、limit与字节序
+     */
+    public static void hash128(ByteBuffer buffer, int seed, long[] out) {
+        int position = buffer.position();
+        int length = buffer.remaining();
+        if(buffer.hasArray()) {
+            hash(buffer.array(), buffer.arrayOffset() + position, length, seed, out);
+            return;
+        }
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long h1 = seed & 0xffffffffL;
+        long h2 = h1;
+        int end = position + (length & ~15);
+        for(int i = position; i < end; i += 16) {
+            long k1 = buffer.getLong(i);
+            long k2 = buffer.getLong(i + 8);
+            if(bigEndian) {
+                k1 = Long.reverseBytes(k1);
+                k2 = Long.reverseBytes(k2);
+            }
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int remaining = length & 15;
+        long k1 = 0;
+        long k2 = 0;
+        for(int i = remaining - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (buffer.get(end + i) & 0xffL);
+        }
+        for(int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (buffer.get(end + i) & 0xffL);
+        }
+        finish(h1, h2, k1, k2, length, out);
+    }
+
+    private static long finish(long h1, long h2, long k1, long k2, long length, long[] out) {
+        h2 ^= mixK2(k2);
+        h1 ^= mixK1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        if(out != null) {
+            out[0] = h1;
+            out[1] = h2;
+        }
+        return h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    /**
+     * 64位finalizer，雪崩效果良好，也可以单独用于打散整数
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,160 @@
+package com.sdww8591.utils.third;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MurmurHash的增量版本，用于对大文件、内存映射文件等无法一次性放入堆内的数据计算hash，
+ * 对相同的字节序列，finish()的结果与MurmurHash.hash(byte[])完全一致。
+ * MurmurHash64A在初始化时就需要数据的总长度，因此构造时必须给出totalLength，finish()时会校验实际长度。
+ * update可以在任意位置切分数据，不足8字节的部分会暂存起来与下一次update的数据拼接。
+ * 实例不是线程安全的，也不能重复使用。
+ */
+public class MurmurHasher {
+
+    /**
+     * hashFile每次映射的区域大小，映射区域位于堆外，不占用堆内存
+     */
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    private final long totalLength;
+
+    private long consumed;
+
+    private long h;
+
+    /**
+     * 尚未凑满8字节的数据，按小端序从低位开始存放
+     */
+    private long pending;
+
+    private int pendingBytes;
+
+    private boolean finished;
+
+    /**
+     * @param totalLength 待计算数据的总字节数
+     */
+    public MurmurHasher(long totalLength) {
+        if(totalLength < 0) {
+            throw new IllegalArgumentException("total length must be non-negative: " + totalLength);
+        }
+        this.totalLength = totalLength;
+        this.h = MurmurHash.SEED ^ (totalLength * MurmurHash.M);
+    }
+
+    public MurmurHasher update(byte[] data) {
+        return update(data, 0, data.length);
+    }
+
+    public MurmurHasher update(byte[] data, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+        consume(length);
+        int end = offset + length;
+        int i = offset;
+        while(pendingBytes > 0 && i < end) {
+            push(data[i++]);
+        }
+        for(; i + 8 <= end; i += 8) {
+            h = MurmurHash.mix(h, MurmurHash.getLongLittleEndian(data, i));
+        }
+        while(i < end) {
+            push(data[i++]);
+        }
+        return this;
+    }
+
+    /**
+     * 读取buffer中position到limit之间的字节，与MessageDigest.update(ByteBuffer)一样，完成后position等于limit
+     */
+    public MurmurHasher update(ByteBuffer buffer) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        if(buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+            buffer.position(limit);
+            return this;
+        }
+        consume(limit - position);
+        int i = position;
+        while(pendingBytes > 0 && i < limit) {
+            push(buffer.get(i++));
+        }
+        //按小端读取每个8字节的word，热循环中不再逐个reverseBytes；不修改调用方buffer的字节序
+        ByteBuffer words = buffer.order() == ByteOrder.LITTLE_ENDIAN
+                ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for(; i + 8 <= limit; i += 8) {
+            h = MurmurHash.mix(h, words.getLong(i));
+        }
+        while(i < limit) {
+            push(buffer.get(i++));
+        }
+        buffer.position(limit);
+        return this;
+    }
+
+    private void consume(int length) {
+        if(finished) {
+            throw new IllegalStateException("hasher has been finished!");
+        }
+        if(consumed + length > totalLength) {
+            throw new IllegalStateException("more than " + totalLength + " bytes were supplied!");
+        }
+        consumed += length;
+    }
+
+    private void push(byte b) {
+        pending |= (b & 0xffL) << (pendingBytes << 3);
+        if(++pendingBytes == 8) {
+            h = MurmurHash.mix(h, pending);
+            pending = 0;
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * @return 全部数据的hash值
+     */
+    public long finish() {
+        if(finished) {
+            throw new IllegalStateException("hasher has been finished!");
+        }
+        if(consumed != totalLength) {
+            throw new IllegalStateException("expected " + totalLength + " bytes but got " + consumed);
+        }
+        finished = true;
+        if(pendingBytes > 0) {
+            h ^= pending;
+            h *= MurmurHash.M;
+        }
+        return MurmurHash.finish(h);
+    }
+
+    /**
+     * 分段内存映射整个文件并计算hash，堆内存占用与文件大小无关
+     */
+    public static long hash(FileChannel channel) throws IOException {
+        return hash(channel, 0, channel.size());
+    }
+
+    /**
+     * 分段内存映射文件的[position, position + length)区域并计算hash
+     */
+    public static long hash(FileChannel channel, long position, long length) throws IOException {
+        MurmurHasher hasher = new MurmurHasher(length);
+        long offset = 0;
+        while(offset < length) {
+            long size = Math.min(MAPPED_REGION_SIZE, length - offset);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, size);
+            region.order(ByteOrder.LITTLE_ENDIAN);
+            hasher.update(region);
+            offset += size;
+        }
+        return hasher.finish();
+    }
+}
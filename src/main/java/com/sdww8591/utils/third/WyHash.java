@@ -0,0 +1,117 @@
+package com.sdww8591.utils.third;
+
+/**
+ * wyhash（王一，final version 4）：以64x64->128位乘法为核心的hash函数，短key与长key上都非常快。
+ * Java 7没有128位乘法指令可用，这里用4次32位乘法拼出128位乘积；直接按小端序读取byte[]，不分配对象。
+ * 使用默认secret，结果与参考实现wyhash(key, len, seed, _wyp)一致。
+ */
+public class WyHash {
+
+    private static final long SECRET0 = 0xa0761d6478bd642fL;
+
+    private static final long SECRET1 = 0xe7037ed1a0b428dbL;
+
+    private static final long SECRET2 = 0x8ebc6af09c88c6e3L;
+
+    private static final long SECRET3 = 0x589965cc75374cc3L;
+
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        if(offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+        seed ^= mix(seed ^ SECRET0, SECRET1);
+        long a;
+        long b;
+        if(length <= 16) {
+            if(length >= 4) {
+                int shift = (length >>> 3) << 2;
+                a = (read4(data, offset) << 32) | read4(data, offset + shift);
+                b = (read4(data, offset + length - 4) << 32) | read4(data, offset + length - 4 - shift);
+            } else if(length > 0) {
+                a = ((data[offset] & 0xffL) << 16)
+                        | ((data[offset + (length >>> 1)] & 0xffL) << 8)
+                        | (data[offset + length - 1] & 0xffL);
+                b = 0;
+            } else {
+                a = 0;
+                b = 0;
+            }
+        } else {
+            int i = length;
+            int p = offset;
+            if(i > 48) {
+                long see1 = seed;
+                long see2 = seed;
+                do {
+                    seed = mix(read8(data, p) ^ SECRET1, read8(data, p + 8) ^ seed);
+                    see1 = mix(read8(data, p + 16) ^ SECRET2, read8(data, p + 24) ^ see1);
+                    see2 = mix(read8(data, p + 32) ^ SECRET3, read8(data, p + 40) ^ see2);
+                    p += 48;
+                    i -= 48;
+                } while(i > 48);
+                seed ^= see1 ^ see2;
+            }
+            while(i > 16) {
+                seed = mix(read8(data, p) ^ SECRET1, read8(data, p + 8) ^ seed);
+                i -= 16;
+                p += 16;
+            }
+            a = read8(data, p + i - 16);
+            b = read8(data, p + i - 8);
+        }
+        a ^= SECRET1;
+        b ^= seed;
+        long low = a * b;
+        long high = multiplyHigh(a, b);
+        return mix(low ^ SECRET0 ^ length, high ^ SECRET1);
+    }
+
+    /**
+     * 对long型key的8个小端序字节计算wyhash
+     */
+    public static long hash(long key, long seed) {
+        seed ^= mix(seed ^ SECRET0, SECRET1);
+        //与8字节时的读取方式一致：a为低32位在前，b为高32位在前
+        long a = (key << 32) | (key >>> 32);
+        long b = key;
+        a ^= SECRET1;
+        b ^= seed;
+        long low = a * b;
+        long high = multiplyHigh(a, b);
+        return mix(low ^ SECRET0 ^ 8, high ^ SECRET1);
+    }
+
+    /**
+     * 128位乘积的低64位与高64位异或
+     */
+    private static long mix(long a, long b) {
+        return (a * b) ^ multiplyHigh(a, b);
+    }
+
+    /**
+     * 无符号64x64乘法的高64位
+     */
+    private static long multiplyHigh(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL;
+        long bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long lowHigh = aLow * bHigh;
+        long highHigh = aHigh * bHigh;
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+        return (highLow >>> 32) + (cross >>> 32) + highHigh;
+    }
+
+    private static long read8(byte[] data, int i) {
+        return MurmurHash.getLongLittleEndian(data, i);
+    }
+
+    private static long read4(byte[] data, int i) {
+        return (data[i] & 0xffL)
+                | (data[i + 1] & 0xffL) << 8
+                | (data[i + 2] & 0xffL) << 16
+                | (data[i + 3] & 0xffL) << 24;
+    }
+}
@@ -0,0 +1,101 @@
+package com.sdww8591.utils.third;
+
+/**
+ * xxHash64（Yann Collet），输入较长时每轮并行处理4个独立的64位累加器，吞吐明显高于MurmurHash64A。
+ * 直接按小端序读取byte[]，不分配对象，结果与参考实现XXH64一致。
+ */
+public class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        if(offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+        int end = offset + length;
+        int i = offset;
+        long h;
+        if(length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, MurmurHash.getLongLittleEndian(data, i));
+                v2 = round(v2, MurmurHash.getLongLittleEndian(data, i + 8));
+                v3 = round(v3, MurmurHash.getLongLittleEndian(data, i + 16));
+                v4 = round(v4, MurmurHash.getLongLittleEndian(data, i + 24));
+                i += 32;
+            } while(i <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += length;
+
+        for(; i + 8 <= end; i += 8) {
+            h ^= round(0, MurmurHash.getLongLittleEndian(data, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if(i + 4 <= end) {
+            h ^= (getIntLittleEndian(data, i) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for(; i < end; i++) {
+            h ^= (data[i] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+        return avalanche(h);
+    }
+
+    /**
+     * 对long型key的8个小端序字节计算xxHash64
+     */
+    public static long hash(long key, long seed) {
+        long h = seed + PRIME5 + 8;
+        h ^= round(0, key);
+        h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        return avalanche(h);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static int getIntLittleEndian(byte[] data, int i) {
+        return (data[i] & 0xff)
+                | (data[i + 1] & 0xff) << 8
+                | (data[i + 2] & 0xff) << 16
+                | (data[i + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,127 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CLHLock的Java 21版本，公开的方法与src/main/java中的CLHLock相同，适用于虚拟线程：
+ * <ul>
+ *     <li>平台线程先有限次数地自旋，虚拟线程不自旋；前驱仍未释放时登记在前驱节点上并park，
+ *     虚拟线程park时会从carrier线程上卸载，不会占住carrier</li>
+ *     <li>每次加锁使用新节点，持有锁的节点记录在锁上，不再使用ThreadLocal，
+ *     大量虚拟线程使用同一个锁时不会为每个线程保留一个节点</li>
+ * </ul>
+ * 该锁不可重入。
+ */
+public class CLHLock {
+
+    private static final int SPINS = 1 << 10;
+
+    private final AtomicReference<Node> tail = new AtomicReference<>(new Node(true));
+
+    /**
+     * 持有锁的节点，只由持有锁的线程读写
+     */
+    private Node owner;
+
+    /**
+     * 持有锁的线程，只由持有锁的线程写；其他线程release时读到的不可能是自己，因此不需要volatile
+     */
+    private Thread ownerThread;
+
+    public void lock() {
+        Node currentNode = new Node(false);
+        Node tailNode = tail.getAndSet(currentNode);
+        if(Spins.spinAllowed()) {
+            for(int i = 0; i < SPINS && !tailNode.status; i++) {
+                Spins.onSpinWait();
+            }
+        }
+        if(!tailNode.status) {
+            tailNode.waiter = Thread.currentThread();
+            //登记之后再检查status，前驱要么看到waiter，要么在这之前已经释放
+            while(!tailNode.status) {
+                LockSupport.park(this);
+            }
+        }
+        owner = currentNode;
+        ownerThread = Thread.currentThread();
+    }
+
+    /**
+     * 只有队尾节点已经释放（没有线程持有或等待锁）时才入队，成功后直接拿到锁。
+     * 每次加锁都使用新节点，队尾节点不会被回收复用，CAS成功即说明队尾仍是那个已经释放的节点
+     */
+    public boolean tryLock() {
+        Node tailNode = tail.get();
+        if(!tailNode.status) {
+            return false;
+        }
+        Node currentNode = new Node(false);
+        if(!tail.compareAndSet(tailNode, currentNode)) {
+            return false;
+        }
+        owner = currentNode;
+        ownerThread = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * @throws IllegalMonitorStateException 当前线程没有持有锁
+     */
+    public void release() {
+        if(ownerThread != Thread.currentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        Node currentNode = owner;
+        ownerThread = null;
+        owner = null;
+        currentNode.status = true;
+        Thread waiter = currentNode.waiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    static final class Node {
+        /**
+         * status为true代表线程已释放lock
+         * status为false代表线程未拿到或者已经拿到lock但未释放
+         */
+        volatile boolean status;
+
+        /**
+         * park在该节点上的后继
+         */
+        volatile Thread waiter;
+
+        Node(boolean status) {
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final CLHLock clhLock = new CLHLock();
+        Thread[] threads = new Thread[3];
+        for(int i = 0; i < threads.length; i++) {
+            final int j = i;
+            threads[i] = Thread.ofVirtual().start(() -> {
+                System.out.println("thread-" + j + " started!");
+                clhLock.lock();
+                try {
+                    System.out.println("thread-" + j + " get lock!");
+                    TimeUnit.SECONDS.sleep(2);
+                    System.out.println("thread-" + j + " release lock!");
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    clhLock.release();
+                }
+            });
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
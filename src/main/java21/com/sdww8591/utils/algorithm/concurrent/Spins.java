@@ -0,0 +1,23 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+/**
+ * 自旋等待的策略，Java 21版本：虚拟线程从不自旋，直接park让出carrier线程。
+ */
+final class Spins {
+
+    private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+    private Spins() {
+    }
+
+    /**
+     * @return 当前线程在park之前是否值得自旋等待；虚拟线程自旋会占住carrier，使其他虚拟线程无法运行
+     */
+    static boolean spinAllowed() {
+        return MULTIPROCESSOR && !Thread.currentThread().isVirtual();
+    }
+
+    static void onSpinWait() {
+        Thread.onSpinWait();
+    }
+}
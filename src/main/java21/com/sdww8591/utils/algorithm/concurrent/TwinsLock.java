@@ -0,0 +1,228 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * TwinsLock的Java 21版本，公开的方法与src/main/java中的TwinsLock相同。
+ * 区别在于每个线程持有的许可数不再放在ThreadLocal中，而是记录在长度为permits的holders中：
+ * 每个被持有的许可占用一个槽位，获取许可后CAS一个空槽位写入当前线程，释放时清空自己的槽位。
+ * 加锁解锁都不分配对象，大量虚拟线程使用同一个锁时，内存占用也不随线程数增长。
+ * 等待的线程由AQS park，虚拟线程等待时会从carrier线程上卸载。
+ */
+public class TwinsLock {
+
+    private static final int DEFAULT_PERMITS = 2;
+
+    private final Sync sync;
+
+    private final int permits;
+
+    /**
+     * 每个被持有的许可对应一个存放持有线程的槽位，null表示空闲，用于保证调用unlock()的线程曾经调用过lock()。
+     * 先拿到许可再占用槽位、先清空槽位再归还许可，因此拿到许可的线程总能找到空槽位
+     */
+    private final AtomicReferenceArray<Thread> holders;
+
+    public TwinsLock() {
+        this(DEFAULT_PERMITS, false);
+    }
+
+    public TwinsLock(int permits) {
+        this(permits, false);
+    }
+
+    /**
+     * @param permits 最多同时持有锁的线程数
+     * @param fair 是否按照到达顺序获取许可
+     */
+    public TwinsLock(int permits, boolean fair) {
+        if(permits < 1) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        this.permits = permits;
+        this.sync = new Sync(permits, fair);
+        this.holders = new AtomicReferenceArray<>(permits);
+    }
+
+    private static final class Sync extends AbstractQueuedSynchronizer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean fair;
+
+        private Sync(int permits, boolean fair) {
+            this.fair = fair;
+            setState(permits);
+        }
+
+        @Override
+        protected int tryAcquireShared(int arg) {
+            for(;;) {
+                if(fair && hasQueuedPredecessors()) {
+                    return -1;
+                }
+                int current = getState();
+                int target = current - arg;
+                if(target < 0 || compareAndSetState(current, target)) {
+                    return target;
+                }
+            }
+        }
+
+        private boolean tryAcquireFast() {
+            int current = getState();
+            return current > 0 && (!fair || !hasQueuedThreads()) && compareAndSetState(current, current - 1);
+        }
+
+        private boolean tryAcquireBarging() {
+            for(;;) {
+                int current = getState();
+                if(current <= 0) {
+                    return false;
+                }
+                if(compareAndSetState(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        protected boolean tryReleaseShared(int arg) {
+            for(;;) {
+                int current = getState();
+                if(compareAndSetState(current, current + arg)) {
+                    return true;
+                }
+            }
+        }
+
+        private int availablePermits() {
+            return getState();
+        }
+    }
+
+    public void lock() {
+        if(!sync.tryAcquireFast()) {
+            sync.acquireShared(1);
+        }
+        addHolder();
+    }
+
+    public void lockInterruptibly() throws InterruptedException {
+        if(!sync.tryAcquireFast()) {
+            sync.acquireSharedInterruptibly(1);
+        }
+        addHolder();
+    }
+
+    /**
+     * 立即尝试获取许可，不排队；公平模式下同样不考虑排队中的线程
+     */
+    public boolean tryLock() {
+        if(sync.tryAcquireBarging()) {
+            addHolder();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if(sync.tryAcquireFast() || sync.tryAcquireSharedNanos(1, unit.toNanos(time))) {
+            addHolder();
+            return true;
+        }
+        return false;
+    }
+
+    public void unlock() {
+        Thread current = Thread.currentThread();
+        int start = startSlot(current);
+        for(int i = 0; i < permits; i++) {
+            int slot = (start + i) % permits;
+            //只有当前线程会清空写有自己的槽位
+            if(holders.get(slot) == current) {
+                holders.set(slot, null);
+                sync.releaseShared(1);
+                return;
+            }
+        }
+        throw new IllegalMonitorStateException();
+    }
+
+    /**
+     * 在拿到许可之后调用。从按线程散列的位置开始找空槽位，不同线程大概率不会CAS同一个槽位；
+     * 扫描期间其他线程可能占用或清空槽位，找不到时重新扫描
+     */
+    private void addHolder() {
+        Thread current = Thread.currentThread();
+        int start = startSlot(current);
+        for(;;) {
+            for(int i = 0; i < permits; i++) {
+                int slot = (start + i) % permits;
+                if(holders.get(slot) == null && holders.compareAndSet(slot, null, current)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int startSlot(Thread thread) {
+        long h = thread.threadId() * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 33) % permits);
+    }
+
+    /**
+     * @return 当前剩余的许可数
+     */
+    public int availablePermits() {
+        return sync.availablePermits();
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @return 当前线程持有的许可数
+     */
+    public int getHoldCount() {
+        Thread current = Thread.currentThread();
+        int count = 0;
+        for(int i = 0; i < permits; i++) {
+            if(holders.get(i) == current) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final TwinsLock lock = new TwinsLock();
+        for(int i = 0; i < 10; i++) {
+            Thread.ofVirtual().name("worker-" + i).start(() -> {
+                try {
+                    while(true) {
+                        lock.lock();
+                        try {
+                            TimeUnit.SECONDS.sleep(1);
+                            System.out.println(Thread.currentThread().getName());
+                            TimeUnit.SECONDS.sleep(1);
+                        } finally {
+                            lock.unlock();
+                        }
+                        TimeUnit.SECONDS.sleep(1);
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        Thread.currentThread().join();
+    }
+}
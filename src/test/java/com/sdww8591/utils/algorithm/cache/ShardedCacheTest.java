@@ -0,0 +1,94 @@
+package com.sdww8591.utils.algorithm.cache;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ShardedCacheTest extends TestCase {
+
+    public void testBasicOperations() {
+        ShardedCache<String, Integer> cache = new ShardedCache<>(8, 1000);
+        assertNull(cache.put("a", 1));
+        assertEquals(Integer.valueOf(1), cache.put("a", 2));
+        assertEquals(Integer.valueOf(2), cache.putIfAbsent("a", 3));
+        assertNull(cache.putIfAbsent("b", 3));
+        assertEquals(Integer.valueOf(2), cache.get("a"));
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(3), cache.remove("b"));
+        assertNull(cache.get("b"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        try {
+            cache.put(null, 1);
+            fail();
+        } catch(IllegalArgumentException e) {
+            //期望的异常
+        }
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        ShardedCache<Integer, Integer> cache = new ShardedCache<>(4, 4000);
+        for(int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+            //0号key一直被访问，不会被淘汰
+            assertEquals(Integer.valueOf(0), cache.get(0));
+        }
+        assertTrue(cache.size() <= 4000);
+        assertEquals(10000 - cache.size(), cache.evictionCount());
+        assertEquals(Integer.valueOf(9999), cache.get(9999));
+    }
+
+    public void testResizeMovesOnlyAffectedKeys() {
+        int n = 20000;
+        ShardedCache<Integer, Integer> cache = new ShardedCache<>(8, n);
+        for(int i = 0; i < n; i++) {
+            cache.put(i, i);
+        }
+        long moved = cache.resize(10);
+        assertEquals(10, cache.segmentCount());
+        //新增的2个段大约接管 2/10 的key
+        assertTrue("moved " + moved, moved > n * 0.1 && moved < n * 0.3);
+        moved = cache.resize(8);
+        assertTrue("moved " + moved, moved > n * 0.1 && moved < n * 0.3);
+        //段容量随段数变化而取整，可能有少量key在缩容时被淘汰
+        assertTrue(cache.size() + cache.evictionCount() == n);
+        for(int i = 0; i < n; i++) {
+            Integer value = cache.get(i);
+            assertTrue(value == null || value == i);
+        }
+    }
+
+    public void testConcurrentWritesDuringResize() throws Exception {
+        final ShardedCache<Integer, Integer> cache = new ShardedCache<>(4, 1000000);
+        final int threads = 4;
+        final int perThread = 20000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<String> error = new AtomicReference<>();
+        for(int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < perThread; i++) {
+                        int key = id * perThread + i;
+                        cache.put(key, key);
+                        if(!Integer.valueOf(key).equals(cache.get(key))) {
+                            error.set("lost key " + key);
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        for(int i = 0; done.getCount() > 0; i++) {
+            cache.resize(4 + i % 5);
+        }
+        done.await();
+        assertNull(error.get());
+        assertEquals(threads * perThread, cache.size());
+        for(int key = 0; key < threads * perThread; key++) {
+            assertEquals(Integer.valueOf(key), cache.get(key));
+        }
+    }
+}
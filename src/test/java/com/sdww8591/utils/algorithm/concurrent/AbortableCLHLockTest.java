@@ -0,0 +1,127 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AbortableCLHLockTest extends TestCase {
+
+    /**
+     * 单核机器上也要能跑完，因此使用带退避（会让出CPU）的配置，并混合使用超时加锁
+     */
+    public void testMutualExclusionWithTimeouts() throws Exception {
+        final AbortableCLHLock lock = new AbortableCLHLock(4, 256);
+        final int threads = 4;
+        final int perThread = 20000;
+        final long[] counter = new long[1];
+        final AtomicInteger acquired = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final int id = i;
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < perThread; j++) {
+                        boolean locked;
+                        if((j + id) % 2 == 0) {
+                            lock.lock();
+                            locked = true;
+                        } else {
+                            locked = lock.tryLock(10, TimeUnit.MICROSECONDS);
+                        }
+                        if(locked) {
+                            counter[0]++;
+                            acquired.incrementAndGet();
+                            lock.release();
+                        }
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(acquired.get(), counter[0]);
+        assertTrue(counter[0] >= threads * perThread / 2);
+        assertTrue(lock.tryLock());
+        lock.release();
+    }
+
+    /**
+     * 排在中间的等待者超时离开后，后继改为等待它的前驱，锁释放后后继能够拿到锁
+     */
+    public void testAbortedWaiterIsSkipped() throws Exception {
+        final AbortableCLHLock lock = new AbortableCLHLock(1, 64);
+        lock.lock();
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        Thread impatient = new Thread() {
+            @Override
+            public void run() {
+                timedOut.set(!lock.tryLock(50, TimeUnit.MILLISECONDS));
+            }
+        };
+        impatient.start();
+        Thread.sleep(10);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread patient = new Thread() {
+            @Override
+            public void run() {
+                lock.lock();
+                acquired.countDown();
+                lock.release();
+            }
+        };
+        patient.start();
+        impatient.join();
+        assertTrue(timedOut.get());
+        assertFalse(acquired.await(20, TimeUnit.MILLISECONDS));
+        lock.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        patient.join();
+        assertTrue(lock.tryLock());
+        lock.release();
+    }
+
+    /**
+     * 等待者在持有者释放之后才超时离开，会把队尾还给已经释放的节点，此时锁是空闲的，tryLock应当成功
+     */
+    public void testTryLockAfterWaiterTimesOutPastRelease() throws Exception {
+        //退避一次空转几十毫秒，等待者读到pred为null之后进入退避，醒来时已经超时，不会再看到AVAILABLE
+        final AbortableCLHLock lock = new AbortableCLHLock(1 << 26, 1 << 26);
+        lock.lock();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                started.countDown();
+                if(lock.tryLock(1, TimeUnit.MILLISECONDS)) {
+                    acquired.set(true);
+                    lock.release();
+                }
+            }
+        };
+        waiter.start();
+        started.await();
+        Thread.sleep(10);
+        lock.release();
+        waiter.join();
+        assertTrue(lock.tryLock());
+        lock.release();
+        assertTrue(lock.tryLock(1, TimeUnit.MILLISECONDS));
+        lock.release();
+    }
+
+    public void testReleaseWithoutLock() {
+        try {
+            new AbortableCLHLock().release();
+            fail();
+        } catch(IllegalMonitorStateException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BiasedReadWriteLockTest extends TestCase {
+
+    private volatile int first;
+
+    private volatile int second;
+
+    /**
+     * 写者总是同时修改两个字段，读者在读锁和乐观读下都不能看到不一致的值
+     */
+    public void testReadersNeverSeeTornWrites() throws Exception {
+        final BiasedReadWriteLock lock = new BiasedReadWriteLock(4);
+        final AtomicBoolean torn = new AtomicBoolean();
+        final AtomicInteger optimisticHits = new AtomicInteger();
+        Thread[] threads = new Thread[6];
+        for(int i = 0; i < threads.length; i++) {
+            final boolean writer = i < 2;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < 5000; j++) {
+                        if(writer) {
+                            long stamp = lock.writeLock();
+                            try {
+                                first++;
+                                Thread.yield();
+                                second++;
+                            } finally {
+                                lock.unlockWrite(stamp);
+                            }
+                        } else if((j & 1) == 0) {
+                            long stamp = lock.readLock();
+                            try {
+                                int a = first;
+                                Thread.yield();
+                                if(a != second) {
+                                    torn.set(true);
+                                }
+                            } finally {
+                                lock.unlockRead(stamp);
+                            }
+                        } else {
+                            long stamp = lock.tryOptimisticRead();
+                            int a = first;
+                            int b = second;
+                            if(lock.validate(stamp)) {
+                                optimisticHits.incrementAndGet();
+                                if(a != b) {
+                                    torn.set(true);
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(torn.get());
+        assertEquals(10000, first);
+        assertEquals(10000, second);
+        assertTrue(optimisticHits.get() > 0);
+    }
+
+    public void testWriterRevokesBiasAndReaderRestoresIt() throws Exception {
+        BiasedReadWriteLock lock = new BiasedReadWriteLock();
+        assertTrue(lock.isReadBiased());
+        long read = lock.readLock();
+        assertTrue("fast path stamp", read > 0);
+        lock.unlockRead(read);
+
+        long write = lock.writeLock();
+        assertFalse(lock.isReadBiased());
+        assertTrue(lock.isWriteLocked());
+        assertEquals(0L, lock.tryOptimisticRead());
+        lock.unlockWrite(write);
+
+        //禁止期很短，过后底层读锁上的读者重新开启偏向
+        TimeUnit.MILLISECONDS.sleep(10);
+        lock.unlockRead(lock.readLock());
+        assertTrue(lock.isReadBiased());
+        read = lock.readLock();
+        assertTrue(read > 0);
+        lock.unlockRead(read);
+    }
+
+    public void testWriterWaitsForBiasedReaders() throws Exception {
+        final BiasedReadWriteLock lock = new BiasedReadWriteLock();
+        long read = lock.readLock();
+        assertTrue(read > 0);
+        assertEquals(0L, lock.tryWriteLock());
+        assertTrue(lock.isReadBiased());
+
+        final AtomicBoolean written = new AtomicBoolean();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                long stamp = lock.writeLock();
+                written.set(true);
+                lock.unlockWrite(stamp);
+            }
+        };
+        writer.start();
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertFalse(written.get());
+        lock.unlockRead(read);
+        writer.join(5000);
+        assertTrue(written.get());
+    }
+
+    public void testOptimisticReadInvalidatedByWrite() {
+        BiasedReadWriteLock lock = new BiasedReadWriteLock();
+        long stamp = lock.tryOptimisticRead();
+        assertTrue(lock.validate(stamp));
+        lock.unlockWrite(lock.writeLock());
+        assertFalse(lock.validate(stamp));
+        assertFalse(lock.validate(0L));
+        assertTrue(lock.validate(lock.tryOptimisticRead()));
+    }
+
+    public void testIllegalUnlock() {
+        BiasedReadWriteLock lock = new BiasedReadWriteLock();
+        try {
+            lock.unlockRead(1L);
+            fail();
+        } catch(IllegalMonitorStateException e) {
+            //期望的异常
+        }
+        try {
+            lock.unlockWrite(lock.tryOptimisticRead());
+            fail();
+        } catch(IllegalMonitorStateException e) {
+            //期望的异常
+        }
+        try {
+            new BiasedReadWriteLock(0);
+            fail();
+        } catch(IllegalArgumentException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+
+public class BlockingCLHLockTest extends TestCase {
+
+    public void testMutualExclusion() throws Exception {
+        final BlockingCLHLock lock = new BlockingCLHLock();
+        final int threads = 4;
+        final int perThread = 50000;
+        final long[] counter = new long[1];
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < perThread; j++) {
+                        lock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * perThread, counter[0]);
+    }
+
+    public void testTryLockAndOwnership() throws Exception {
+        final BlockingCLHLock lock = new BlockingCLHLock();
+        assertTrue(lock.tryLock());
+        assertTrue(lock.isHeldByCurrentThread());
+        final AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                acquired.set(lock.tryLock());
+                try {
+                    lock.unlock();
+                    fail();
+                } catch(IllegalMonitorStateException e) {
+                    //期望的异常
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertFalse(acquired.get());
+        lock.release();
+        assertFalse(lock.isHeldByCurrentThread());
+        assertTrue(lock.tryLock(1, TimeUnit.SECONDS));
+        lock.unlock();
+    }
+
+    /**
+     * 排在中间的等待者超时离开后，它后面的等待者仍然可以在锁释放后拿到锁
+     */
+    public void testTimedOutWaiterIsSkipped() throws Exception {
+        final BlockingCLHLock lock = new BlockingCLHLock();
+        lock.lock();
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread impatient = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    if(!lock.tryLock(50, TimeUnit.MILLISECONDS)) {
+                        timedOut.countDown();
+                    }
+                } catch(InterruptedException e) {
+                    //不会被中断
+                }
+            }
+        };
+        impatient.start();
+        Thread.sleep(10);
+        Thread patient = new Thread() {
+            @Override
+            public void run() {
+                lock.lock();
+                acquired.countDown();
+                lock.unlock();
+            }
+        };
+        patient.start();
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertEquals(1, acquired.getCount());
+        lock.unlock();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        patient.join();
+        assertTrue(lock.tryLock());
+        lock.unlock();
+    }
+
+    public void testLockInterruptibly() throws Exception {
+        final BlockingCLHLock lock = new BlockingCLHLock();
+        lock.lock();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    lock.lockInterruptibly();
+                } catch(InterruptedException e) {
+                    interrupted.set(!Thread.currentThread().isInterrupted());
+                }
+            }
+        };
+        waiter.start();
+        Thread.sleep(20);
+        waiter.interrupt();
+        waiter.join(5000);
+        assertTrue(interrupted.get());
+        lock.unlock();
+        assertTrue(lock.tryLock());
+        lock.unlock();
+    }
+
+    public void testCondition() throws Exception {
+        final BlockingCLHLock lock = new BlockingCLHLock();
+        final Condition notEmpty = lock.newCondition();
+        final AtomicInteger items = new AtomicInteger();
+        final int consumers = 3;
+        final CountDownLatch consumed = new CountDownLatch(consumers);
+        for(int i = 0; i < consumers; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    lock.lock();
+                    try {
+                        while(items.get() == 0) {
+                            notEmpty.await();
+                        }
+                        items.decrementAndGet();
+                        consumed.countDown();
+                    } catch(InterruptedException e) {
+                        //不会被中断
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }.start();
+        }
+        Thread.sleep(20);
+        for(int i = 0; i < consumers; i++) {
+            lock.lock();
+            try {
+                items.incrementAndGet();
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+        assertTrue(consumed.await(5, TimeUnit.SECONDS));
+
+        lock.lock();
+        try {
+            assertFalse(notEmpty.await(10, TimeUnit.MILLISECONDS));
+            assertTrue(lock.isHeldByCurrentThread());
+        } finally {
+            lock.unlock();
+        }
+        try {
+            notEmpty.signal();
+            fail();
+        } catch(IllegalMonitorStateException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同时适用于src/main/java与src/main/java21中的CLHLock
+ */
+public class CLHLockTest extends TestCase {
+
+    public void testMutualExclusion() throws Exception {
+        final CLHLock lock = new CLHLock();
+        final long[] counter = new long[1];
+        Thread[] threads = new Thread[2];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < 500; j++) {
+                        lock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.release();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000L, counter[0]);
+    }
+
+    public void testReleaseWithoutLock() {
+        try {
+            new CLHLock().release();
+            fail();
+        } catch(IllegalMonitorStateException expected) {
+        }
+    }
+
+    public void testReleaseByNonOwnerRejected() throws Exception {
+        final CLHLock lock = new CLHLock();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread owner = new Thread() {
+            @Override
+            public void run() {
+                lock.lock();
+                locked.countDown();
+                try {
+                    done.await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.release();
+                }
+            }
+        };
+        owner.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        try {
+            lock.release();
+            fail();
+        } catch(IllegalMonitorStateException expected) {
+        }
+        //非法的release没有释放锁
+        assertFalse(lock.tryLock());
+        done.countDown();
+        owner.join();
+        assertTrue(lock.tryLock());
+        lock.release();
+    }
+}
@@ -0,0 +1,71 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+public class CohortLockTest extends TestCase {
+
+    /**
+     * 按线程名中的序号分成两组，模拟两个socket
+     */
+    private static final ClusterSelector BY_NAME = new ClusterSelector() {
+        @Override
+        public int clusterOf(Thread thread, int clusters) {
+            return Integer.parseInt(thread.getName().substring("worker-".length())) % clusters;
+        }
+    };
+
+    public void testMutualExclusionAcrossClusters() throws Exception {
+        for(int maxLocalHandoffs : new int[]{0, 1, 64}) {
+            final CohortLock lock = new CohortLock(2, BY_NAME, maxLocalHandoffs);
+            final int threads = 4;
+            final int perThread = 20000;
+            final long[] counter = new long[1];
+            final int[] inside = new int[1];
+            final boolean[] overlapped = new boolean[1];
+            Thread[] workers = new Thread[threads];
+            for(int i = 0; i < threads; i++) {
+                workers[i] = new Thread("worker-" + i) {
+                    @Override
+                    public void run() {
+                        for(int j = 0; j < perThread; j++) {
+                            lock.lock();
+                            if(++inside[0] != 1) {
+                                overlapped[0] = true;
+                            }
+                            counter[0]++;
+                            inside[0]--;
+                            lock.release();
+                        }
+                    }
+                };
+                workers[i].start();
+            }
+            for(Thread worker : workers) {
+                worker.join();
+            }
+            assertFalse(overlapped[0]);
+            assertEquals((long) threads * perThread, counter[0]);
+        }
+    }
+
+    public void testIllegalCluster() {
+        CohortLock lock = new CohortLock(2, new ClusterSelector() {
+            @Override
+            public int clusterOf(Thread thread, int clusters) {
+                return clusters;
+            }
+        }, 8);
+        try {
+            lock.lock();
+            fail();
+        } catch(IllegalStateException e) {
+            //期望的异常
+        }
+        try {
+            lock.release();
+            fail();
+        } catch(IllegalMonitorStateException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class FlatCombiningLockTest extends TestCase {
+
+    public void testOperationsAreMutuallyExclusive() throws Exception {
+        for(final FlatCombiningLock lock : new FlatCombiningLock[]{new FlatCombiningLock(),
+                new FlatCombiningLock(new ReentrantLock())}) {
+            final long[] counter = new long[1];
+            final ArrayDeque<Integer> queue = new ArrayDeque<>();
+            final FlatCombiningLock.Operation<Long> increment = new FlatCombiningLock.Operation<Long>() {
+                @Override
+                public Long run() {
+                    return ++counter[0];
+                }
+            };
+            final long[] sums = new long[6];
+            Thread[] threads = new Thread[sums.length];
+            for(int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        for(int j = 0; j < 5000; j++) {
+                            lock.execute(increment);
+                            final int value = j;
+                            lock.execute(new FlatCombiningLock.Operation<Void>() {
+                                @Override
+                                public Void run() {
+                                    queue.addLast(value);
+                                    return null;
+                                }
+                            });
+                            Integer polled = lock.execute(new FlatCombiningLock.Operation<Integer>() {
+                                @Override
+                                public Integer run() {
+                                    return queue.pollFirst();
+                                }
+                            });
+                            sums[index] += polled;
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(30000L, counter[0]);
+            assertTrue(queue.isEmpty());
+            long total = 0;
+            for(long sum : sums) {
+                total += sum;
+            }
+            assertEquals(6L * 4999 * 5000 / 2, total);
+        }
+    }
+
+    public void testExceptionIsRethrownToCaller() {
+        FlatCombiningLock lock = new FlatCombiningLock();
+        try {
+            lock.execute(new FlatCombiningLock.Operation<Object>() {
+                @Override
+                public Object run() {
+                    throw new UnsupportedOperationException("boom");
+                }
+            });
+            fail();
+        } catch(UnsupportedOperationException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals("ok", lock.execute(new FlatCombiningLock.Operation<String>() {
+            @Override
+            public String run() {
+                return "ok";
+            }
+        }));
+    }
+
+    public void testNestedExecuteIsRejected() {
+        final FlatCombiningLock lock = new FlatCombiningLock();
+        try {
+            lock.execute(new FlatCombiningLock.Operation<Object>() {
+                @Override
+                public Object run() {
+                    return lock.execute(this);
+                }
+            });
+            fail();
+        } catch(IllegalStateException e) {
+            //期望的异常
+        }
+    }
+
+    /**
+     * 已经结束的线程的Record最终会被摘除，链表不会随线程数无限增长
+     */
+    public void testIdleRecordsAreRemoved() throws Exception {
+        final FlatCombiningLock lock = new FlatCombiningLock();
+        final FlatCombiningLock.Operation<Void> noop = new FlatCombiningLock.Operation<Void>() {
+            @Override
+            public Void run() {
+                return null;
+            }
+        };
+        for(int i = 0; i < 50; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    lock.execute(noop);
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        assertEquals(50, lock.publishedRecords());
+        for(int i = 0; i < 4096; i++) {
+            lock.execute(noop);
+        }
+        assertTrue(lock.publishedRecords() <= 2);
+    }
+}
@@ -0,0 +1,147 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class InstrumentedLockTest extends TestCase {
+
+    public void testCountsAcquisitionsAndHandoffs() throws Exception {
+        final InstrumentedLock lock = new InstrumentedLock("counter", LockAdapters.of(new MCSLock()));
+        final long[] counter = new long[1];
+        Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < 1000; j++) {
+                        lock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        InstrumentedLock.Snapshot snapshot = lock.snapshot();
+        assertEquals(4000L, counter[0]);
+        assertEquals(4000L, snapshot.getAcquisitions());
+        assertTrue(snapshot.getHandoffs() >= 3 && snapshot.getHandoffs() < 4000);
+        assertEquals(4000L, sum(snapshot.getWaitHistogram()));
+        assertEquals(4000L, sum(snapshot.getHoldHistogram()));
+        assertEquals(0, snapshot.getQueueDepth());
+        assertNull(snapshot.getLongestWaiter());
+        //已经结束的线程合并之后，再次读取结果不变
+        assertEquals(4000L, lock.snapshot().getAcquisitions());
+    }
+
+    public void testQueueDepthAndLongestWaiter() throws Exception {
+        final InstrumentedLock lock = new InstrumentedLock("blocking", new BlockingCLHLock());
+        lock.lock();
+        final CountDownLatch done = new CountDownLatch(2);
+        for(int i = 0; i < 2; i++) {
+            Thread waiter = new Thread("waiter-" + i) {
+                @Override
+                public void run() {
+                    lock.lock();
+                    lock.unlock();
+                    done.countDown();
+                }
+            };
+            waiter.start();
+            while(lock.snapshot().getQueueDepth() <= i) {
+                Thread.sleep(1);
+            }
+        }
+        TimeUnit.MILLISECONDS.sleep(20);
+        InstrumentedLock.Snapshot snapshot = lock.snapshot();
+        assertEquals(2, snapshot.getQueueDepth());
+        assertEquals("waiter-0", snapshot.getLongestWaiter());
+        assertTrue(snapshot.getLongestWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        lock.unlock();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        snapshot = lock.snapshot();
+        assertEquals(3L, snapshot.getAcquisitions());
+        assertTrue(snapshot.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(snapshot.waitPercentile(1.0) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(snapshot.holdPercentile(1.0) >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    public void testReentrancyIsRecordedOnce() {
+        InstrumentedLock lock = new InstrumentedLock("reentrant", new ReentrantLock());
+        lock.lock();
+        assertTrue(lock.tryLock());
+        lock.unlock();
+        lock.unlock();
+        InstrumentedLock.Snapshot snapshot = lock.snapshot();
+        assertEquals(1L, snapshot.getAcquisitions());
+        assertEquals(1L, sum(snapshot.getHoldHistogram()));
+    }
+
+    public void testDisabledRecordsNothing() {
+        InstrumentedLock lock = new InstrumentedLock("disabled", new ReentrantLock(), false);
+        lock.lock();
+        lock.unlock();
+        assertEquals(0L, lock.snapshot().getAcquisitions());
+
+        //持有期间开启，这一次的持有时间不记录，之后的记录正常
+        lock.lock();
+        lock.setEnabled(true);
+        lock.unlock();
+        lock.lock();
+        lock.unlock();
+        lock.setEnabled(false);
+        lock.lock();
+        lock.setEnabled(true);
+        lock.unlock();
+        InstrumentedLock.Snapshot snapshot = lock.snapshot();
+        assertEquals(1L, snapshot.getAcquisitions());
+        assertEquals(1L, sum(snapshot.getHoldHistogram()));
+    }
+
+    /**
+     * 不调用snapshot()时，已经结束的线程的Recorder也会在新线程登记时移除，计数合并后不丢失
+     */
+    public void testDeadThreadsAreRetiredWithoutSnapshot() throws Exception {
+        final InstrumentedLock lock = new InstrumentedLock("churn", new ReentrantLock());
+        int threads = 200;
+        for(int i = 0; i < threads; i++) {
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    lock.lock();
+                    lock.unlock();
+                }
+            };
+            worker.start();
+            worker.join();
+            assertTrue(lock.registeredRecorders() <= 2);
+        }
+        assertEquals(threads, lock.snapshot().getAcquisitions());
+        assertEquals(0, lock.registeredRecorders());
+    }
+
+    public void testBuckets() {
+        assertEquals(0, InstrumentedLock.bucketOf(0));
+        assertEquals(1, InstrumentedLock.bucketOf(1));
+        assertEquals(2, InstrumentedLock.bucketOf(3));
+        assertEquals(11, InstrumentedLock.bucketOf(1024));
+        assertEquals(63, InstrumentedLock.bucketOf(Long.MAX_VALUE));
+    }
+
+    private static long sum(long[] histogram) {
+        long total = 0;
+        for(long count : histogram) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,126 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+public class LockAdaptersTest extends TestCase {
+
+    private static Lock[] adapters() {
+        return new Lock[]{LockAdapters.of(new CLHLock()), LockAdapters.of(new MCSLock()),
+                LockAdapters.of(new CohortLock(2)), LockAdapters.of(new AbortableCLHLock()),
+                LockAdapters.of(new TwinsLock(1))};
+    }
+
+    public void testTryLockDoesNotQueue() throws Exception {
+        for(final Lock lock : adapters()) {
+            assertTrue(lock.tryLock());
+            final boolean[] acquired = new boolean[]{true, true};
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        acquired[0] = lock.tryLock();
+                        acquired[1] = lock.tryLock(10, TimeUnit.MILLISECONDS);
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            other.start();
+            other.join();
+            assertFalse(acquired[0]);
+            assertFalse(acquired[1]);
+            lock.unlock();
+
+            //没有进入队列的tryLock不影响之后的加锁
+            Thread next = new Thread() {
+                @Override
+                public void run() {
+                    acquired[0] = lock.tryLock();
+                    if(acquired[0]) {
+                        lock.unlock();
+                    }
+                }
+            };
+            next.start();
+            next.join();
+            assertTrue(acquired[0]);
+            lock.lock();
+            lock.unlock();
+        }
+    }
+
+    public void testFlatCombiningOverAdapters() throws Exception {
+        for(Lock adapter : adapters()) {
+            final FlatCombiningLock lock = new FlatCombiningLock(adapter);
+            final long[] counter = new long[1];
+            final FlatCombiningLock.Operation<Long> increment = new FlatCombiningLock.Operation<Long>() {
+                @Override
+                public Long run() {
+                    return ++counter[0];
+                }
+            };
+            Thread[] threads = new Thread[4];
+            for(int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        for(int j = 0; j < 2000; j++) {
+                            lock.execute(increment);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(8000L, counter[0]);
+        }
+    }
+
+    public void testInstrumentedOverAdapters() throws Exception {
+        for(Lock adapter : adapters()) {
+            final InstrumentedLock lock = new InstrumentedLock("adapter", adapter);
+            final long[] counter = new long[1];
+            Thread[] threads = new Thread[4];
+            for(int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        for(int j = 0; j < 2000; j++) {
+                            if((j & 1) == 0) {
+                                lock.lock();
+                            } else {
+                                while(!lock.tryLock()) {
+                                    Thread.yield();
+                                }
+                            }
+                            try {
+                                counter[0]++;
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(8000L, counter[0]);
+            assertEquals(8000L, lock.snapshot().getAcquisitions());
+        }
+    }
+
+    public void testNewConditionUnsupported() {
+        try {
+            LockAdapters.of(new MCSLock()).newCondition();
+            fail();
+        } catch(UnsupportedOperationException expected) {
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+public class MCSLockTest extends TestCase {
+
+    public void testMutualExclusion() throws Exception {
+        final MCSLock lock = new MCSLock();
+        final int threads = 4;
+        final int perThread = 20000;
+        final long[] counter = new long[1];
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < perThread; j++) {
+                        lock.lock();
+                        counter[0]++;
+                        lock.release();
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * perThread, counter[0]);
+    }
+
+    public void testHasQueuedThreads() throws Exception {
+        final MCSLock lock = new MCSLock();
+        lock.lock();
+        assertFalse(lock.hasQueuedThreads());
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                lock.lock();
+                lock.release();
+            }
+        };
+        waiter.start();
+        while(!lock.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        lock.release();
+        waiter.join();
+    }
+}
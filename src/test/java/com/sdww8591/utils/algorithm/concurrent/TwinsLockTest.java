@@ -0,0 +1,117 @@
+package com.sdww8591.utils.algorithm.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TwinsLockTest extends TestCase {
+
+    public void testConcurrencyNeverExceedsPermits() throws Exception {
+        for(final boolean fair : new boolean[]{false, true}) {
+            final TwinsLock lock = new TwinsLock(3, fair);
+            final AtomicInteger inside = new AtomicInteger();
+            final AtomicInteger maxInside = new AtomicInteger();
+            Thread[] workers = new Thread[8];
+            for(int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        for(int j = 0; j < 2000; j++) {
+                            lock.lock();
+                            try {
+                                int current = inside.incrementAndGet();
+                                if(current > maxInside.get()) {
+                                    maxInside.set(current);
+                                }
+                                Thread.yield();
+                                inside.decrementAndGet();
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                };
+                workers[i].start();
+            }
+            for(Thread worker : workers) {
+                worker.join();
+            }
+            assertTrue("max inside " + maxInside.get(), maxInside.get() <= 3);
+            assertEquals(3, lock.availablePermits());
+        }
+    }
+
+    /**
+     * 获取失败不能记为持有许可，否则之后的unlock会多释放一个许可
+     */
+    public void testFailedAcquireIsNotRecorded() throws Exception {
+        final TwinsLock lock = new TwinsLock(1);
+        lock.lock();
+        final AtomicBoolean rejected = new AtomicBoolean();
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    if(!lock.tryLock() && !lock.tryLock(10, TimeUnit.MILLISECONDS)) {
+                        lock.unlock();
+                    }
+                } catch(IllegalMonitorStateException e) {
+                    rejected.set(true);
+                } catch(InterruptedException e) {
+                    //不会被中断
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertTrue(rejected.get());
+        assertEquals(0, lock.availablePermits());
+        assertEquals(1, lock.getHoldCount());
+        lock.unlock();
+        assertEquals(1, lock.availablePermits());
+    }
+
+    public void testLockInterruptibly() throws Exception {
+        final TwinsLock lock = new TwinsLock(1, true);
+        lock.lock();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    lock.lockInterruptibly();
+                } catch(InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        waiter.start();
+        while(!lock.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        waiter.interrupt();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        lock.unlock();
+        assertEquals(1, lock.availablePermits());
+    }
+
+    public void testDefaultsToTwoPermits() {
+        TwinsLock lock = new TwinsLock();
+        assertEquals(2, lock.getPermits());
+        assertTrue(lock.tryLock());
+        assertTrue(lock.tryLock());
+        assertFalse(lock.tryLock());
+        assertEquals(2, lock.getHoldCount());
+        lock.unlock();
+        lock.unlock();
+        try {
+            new TwinsLock(0);
+            fail();
+        } catch(IllegalArgumentException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import com.sdww8591.utils.third.MurmurHash;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConsistentHashTest extends TestCase {
+
+    private static final int KEYS = 50000;
+
+    public void testAddNodeMigratesOnlyReportedRanges() {
+        ConsistentHash<String> hash = new ConsistentHash<>(64, Arrays.asList("a", "b", "c"));
+        String[] before = route(hash);
+        List<RangeMigration<String>> migrations = hash.addNode("d");
+        assertFalse(migrations.isEmpty());
+        assertMigrations(before, route(hash), migrations);
+        for(RangeMigration<String> migration : migrations) {
+            assertEquals("d", migration.getTo());
+        }
+    }
+
+    public void testRemoveNodeMigratesOnlyReportedRanges() {
+        ConsistentHash<String> hash = new ConsistentHash<>(64, Arrays.asList("a", "b", "c", "d"));
+        String[] before = route(hash);
+        List<RangeMigration<String>> migrations = hash.removeNode("b");
+        assertMigrations(before, route(hash), migrations);
+        for(RangeMigration<String> migration : migrations) {
+            assertEquals("b", migration.getFrom());
+        }
+        assertEquals(Arrays.asList("a", "c", "d"), hash.getNodes());
+    }
+
+    public void testRejectsInvalidMembershipChanges() {
+        ConsistentHash<String> hash = new ConsistentHash<>(8, Arrays.asList("a"));
+        try {
+            hash.addNode("a");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            hash.removeNode("a");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testHashPlacementIsDeterministic() {
+        ConsistentHash<String> first = new ConsistentHash<>(128, Arrays.asList("a", "b", "c"), new HashPlacement<String>());
+        ConsistentHash<String> second = new ConsistentHash<>(128, Arrays.asList("c", "a", "b"), new HashPlacement<String>());
+        assertTrue(Arrays.equals(route(first), route(second)));
+
+        //增量添加节点与一次性构建得到相同的环
+        first.addNode("d");
+        ConsistentHash<String> third = new ConsistentHash<>(128, Arrays.asList("a", "b", "c", "d"), new HashPlacement<String>());
+        assertTrue(Arrays.equals(route(first), route(third)));
+    }
+
+    public void testWeightedNodesReceiveProportionalLoad() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("small", 1.0);
+        weights.put("large", 3.0);
+        ConsistentHash<String> hash = new ConsistentHash<>(256, weights, new HashPlacement<String>());
+        int large = 0;
+        for(String owner : route(hash)) {
+            if("large".equals(owner)) {
+                large++;
+            }
+        }
+        double ratio = (double) large / KEYS;
+        assertTrue("ratio: " + ratio, ratio > 0.7 && ratio < 0.8);
+    }
+
+    public void testBoundedLoadCapsEveryNode() {
+        ConsistentHash<String> hash = new ConsistentHash<>(64, Arrays.asList("a", "b", "c", "d"), new HashPlacement<String>());
+        BoundedLoadConsistentHash<String> bounded = new BoundedLoadConsistentHash<>(hash, 0.25);
+        int inFlight = 1000;
+        for(int i = 0; i < inFlight; i++) {
+            bounded.acquire("hot");
+        }
+        long limit = (long) Math.ceil(1.25 * inFlight / 4);
+        long total = 0;
+        for(String node : hash.getNodes()) {
+            assertTrue(bounded.getLoad(node) <= limit);
+            total += bounded.getLoad(node);
+        }
+        assertEquals(inFlight, total);
+
+        String owner = hash.getShard("hot");
+        bounded.release(owner);
+        assertEquals(limit - 1, bounded.getLoad(owner));
+    }
+
+    public void testBatchGroupsMatchSingleLookups() {
+        ConsistentHash<String> hash = new ConsistentHash<>(128, Arrays.asList("a", "b", "c", "d", "e"));
+        ShardBatch<String> batch = new ShardBatch<>();
+        String[] keys = new String[4096];
+        for(int size : new int[]{0, 1, 10, 4096}) {
+            for(int i = 0; i < size; i++) {
+                keys[i] = "batch-" + size + "-" + i;
+            }
+            batch.resolve(hash, keys, size);
+            int total = 0;
+            for(int g = 0; g < batch.groupCount(); g++) {
+                for(int i = 0; i < batch.groupSize(g); i++) {
+                    assertEquals(hash.getShard(keys[batch.keyIndex(g, i)]), batch.shard(g));
+                    total++;
+                }
+            }
+            assertEquals(size, total);
+        }
+        Map<String, List<String>> groups = hash.groupByShard(Arrays.asList("x", "y", "z"));
+        for(Map.Entry<String, List<String>> group : groups.entrySet()) {
+            for(String key : group.getValue()) {
+                assertEquals(hash.getShard(key), group.getKey());
+            }
+        }
+    }
+
+    public void testReplicaSetsAreDistinctClockwiseOwners() {
+        ConsistentHash<String> hash = new ConsistentHash<>(32, Arrays.asList("a", "b", "c", "d", "e"));
+        for(int n = 1; n <= 6; n++) {
+            String[] out = new String[n];
+            for(int i = 0; i < 2000; i++) {
+                String key = "replica-" + i;
+                int found = hash.getShards(key, out);
+                assertEquals(Math.min(n, 5), found);
+                assertEquals(hash.getShard(key), out[0]);
+                for(int a = 0; a < found; a++) {
+                    for(int b = a + 1; b < found; b++) {
+                        assertFalse(out[a].equals(out[b]));
+                    }
+                }
+            }
+        }
+
+        //removeNode之后，key的副本集合中去掉该节点，其余节点依次前移
+        String[] before = new String[3];
+        String[] after = new String[2];
+        hash.getShards("moved", before);
+        hash.removeNode(before[0]);
+        hash.getShards("moved", after);
+        assertEquals(before[1], after[0]);
+        assertEquals(before[2], after[1]);
+    }
+
+    public void testTelemetryFindsHotKeys() {
+        ConsistentHash<String> hash = new ConsistentHash<>(32, Arrays.asList("a", "b", "c"));
+        assertNull(hash.getTelemetry());
+        hash.enableTelemetry(1, 3);
+        for(int i = 0; i < 10000; i++) {
+            hash.getShard("cold-" + i);
+            if(i % 10 == 0) {
+                hash.getShard("hot");
+            }
+        }
+        ShardTelemetry.Snapshot<String> snapshot = hash.getTelemetry();
+        assertEquals(11000, snapshot.getTotalRequests());
+        long total = 0;
+        for(long count : snapshot.getNodeRequests().values()) {
+            total += count;
+        }
+        assertEquals(11000, total);
+        assertEquals("hot", snapshot.getHotKeys().get(0).getKey());
+        assertTrue(snapshot.getHotKeys().get(0).getCount() >= 1000);
+    }
+
+    public void testTelemetryCountsNonStringKeys() {
+        ConsistentHash<String> hash = new ConsistentHash<>(32, Arrays.asList("a", "b", "c"));
+        hash.enableTelemetry(1, 3);
+        Map<String, Long> expected = new LinkedHashMap<>();
+        byte[] bytes = new byte[8];
+        for(int i = 0; i < 1000; i++) {
+            String[] shards = new String[]{hash.getShard((long) i),
+                    hash.getShard(bytes, 0, bytes.length),
+                    hash.getShard(ByteBuffer.wrap(bytes)),
+                    hash.getShardByHash(i * 0x9E3779B97F4A7C15L)};
+            bytes[i & 7]++;
+            for(String shard : shards) {
+                Long count = expected.get(shard);
+                expected.put(shard, count == null ? 1L : count + 1);
+            }
+        }
+        ShardTelemetry.Snapshot<String> snapshot = hash.getTelemetry();
+        assertEquals(4000, snapshot.getTotalRequests());
+        assertEquals(expected, snapshot.getNodeRequests());
+        assertTrue(snapshot.getHotKeys().isEmpty());
+    }
+
+    /**
+     * 已经在堆中的key反复更新时，堆中保留的仍然是次数最多的topK个key，并按次数从大到小返回
+     */
+    public void testTelemetryKeepsTopKUnderRepeatedUpdates() {
+        ShardTelemetry<String> telemetry = new ShardTelemetry<>(1, 4);
+        for(int round = 0; round < 200; round++) {
+            for(int k = 0; k < 16; k++) {
+                //key-k每轮被访问k次
+                String key = "key-" + k;
+                for(int j = 0; j < k; j++) {
+                    telemetry.record(key, MurmurHash.hash(key), "a");
+                }
+            }
+        }
+        List<ShardTelemetry.HotKey> hotKeys = telemetry.snapshot().getHotKeys();
+        assertEquals(4, hotKeys.size());
+        for(int i = 0; i < 4; i++) {
+            assertEquals("key-" + (15 - i), hotKeys.get(i).getKey());
+            assertTrue(hotKeys.get(i).getCount() >= 200L * (15 - i));
+        }
+    }
+
+    private static String[] route(ConsistentHash<String> hash) {
+        String[] owners = new String[KEYS];
+        for(int i = 0; i < KEYS; i++) {
+            owners[i] = hash.getShard("key-" + i);
+        }
+        return owners;
+    }
+
+    private static void assertMigrations(String[] before, String[] after, List<RangeMigration<String>> migrations) {
+        for(int i = 0; i < KEYS; i++) {
+            long keyHash = MurmurHash.hash("key-" + i);
+            RangeMigration<String> covering = null;
+            for(RangeMigration<String> migration : migrations) {
+                if(migration.contains(keyHash)) {
+                    assertNull("ranges must not overlap", covering);
+                    covering = migration;
+                }
+            }
+            if(before[i].equals(after[i])) {
+                assertNull(covering);
+            } else {
+                assertNotNull(covering);
+                assertEquals(before[i], covering.getFrom());
+                assertEquals(after[i], covering.getTo());
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * HashRing的查找结果必须与TreeMap.higherEntry完全一致
+ */
+public class HashRingTest extends TestCase {
+
+    public void testLookupMatchesTreeMap() {
+        Random random = new Random(42);
+        String[] nodes = {"a", "b", "c", "d", "e"};
+        for(int size : new int[]{1, 2, 7, 640, 2560}) {
+            TreeMap<Long, String> treeRing = new TreeMap<>();
+            while(treeRing.size() < size) {
+                treeRing.put(random.nextLong(), nodes[random.nextInt(nodes.length)]);
+            }
+            HashRing<String> ring = HashRing.of(treeRing, nodes);
+            assertEquals(size, ring.size());
+
+            for(int i = 0; i < 20000; i++) {
+                long hash = random.nextLong();
+                assertEquals(expected(treeRing, hash), ring.getShard(hash));
+            }
+            for(long hash : treeRing.keySet()) {
+                assertEquals(expected(treeRing, hash), ring.getShard(hash));
+                assertEquals(expected(treeRing, hash - 1), ring.getShard(hash - 1));
+            }
+            assertEquals(expected(treeRing, Long.MIN_VALUE), ring.getShard(Long.MIN_VALUE));
+            assertEquals(expected(treeRing, Long.MAX_VALUE), ring.getShard(Long.MAX_VALUE));
+        }
+    }
+
+    private static String expected(TreeMap<Long, String> treeRing, long hash) {
+        Map.Entry<Long, String> entry = treeRing.higherEntry(hash);
+        return entry == null ? treeRing.firstEntry().getValue() : entry.getValue();
+    }
+}
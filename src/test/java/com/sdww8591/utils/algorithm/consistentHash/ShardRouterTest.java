@@ -0,0 +1,60 @@
+package com.sdww8591.utils.algorithm.consistentHash;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShardRouterTest extends TestCase {
+
+    private static final int KEYS = 100000;
+
+    private static final List<String> NODES = Arrays.asList("n0", "n1", "n2", "n3", "n4", "n5", "n6", "n7");
+
+    public void testRoutersSpreadKeysEvenly() {
+        List<ShardRouter<String>> routers = new ArrayList<>();
+        routers.add(new JumpConsistentHashRouter<>(NODES));
+        routers.add(new MaglevRouter<>(NODES));
+        routers.add(new RendezvousRouter<>(NODES));
+        for(ShardRouter<String> router : routers) {
+            Map<String, Integer> counts = new HashMap<>();
+            for(int i = 0; i < KEYS; i++) {
+                String node = router.getShard("key-" + i);
+                Integer count = counts.get(node);
+                counts.put(node, count == null ? 1 : count + 1);
+            }
+            assertEquals(NODES.size(), counts.size());
+            for(int count : counts.values()) {
+                double share = (double) count * NODES.size() / KEYS;
+                assertTrue(router.getClass().getSimpleName() + ": " + share, share > 0.9 && share < 1.1);
+            }
+        }
+    }
+
+    public void testJumpMovesKeysOnlyToNewBucket() {
+        ShardRouter<String> before = new JumpConsistentHashRouter<>(NODES.subList(0, 7));
+        ShardRouter<String> after = new JumpConsistentHashRouter<>(NODES);
+        for(int i = 0; i < KEYS; i++) {
+            String owner = after.getShard("key-" + i);
+            if(!owner.equals(before.getShard("key-" + i))) {
+                assertEquals("n7", owner);
+            }
+        }
+    }
+
+    public void testRendezvousMovesOnlyRemovedNodeKeys() {
+        ShardRouter<String> before = new RendezvousRouter<>(NODES);
+        List<String> remaining = new ArrayList<>(NODES);
+        remaining.remove("n3");
+        ShardRouter<String> after = new RendezvousRouter<>(remaining);
+        for(int i = 0; i < KEYS; i++) {
+            String owner = before.getShard("key-" + i);
+            if(!owner.equals("n3")) {
+                assertEquals(owner, after.getShard("key-" + i));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.sdww8591.utils.algorithm.filter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+
+public class BlockedBloomFilterTest extends TestCase {
+
+    public void testNoFalseNegativesAndBoundedFalsePositives() {
+        int n = 100000;
+        BlockedBloomFilter filter = new BlockedBloomFilter(n, 0.01);
+        for(int i = 0; i < n; i++) {
+            filter.put("key-" + i);
+        }
+        for(int i = 0; i < n; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        int falsePositives = 0;
+        for(int i = 0; i < n; i++) {
+            if(filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        //分块带来的额外误判，允许达到名义误判率的两倍
+        assertTrue("false positives: " + falsePositives, falsePositives < n * 0.02);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+    }
+
+    public void testOverloadsShareHash() {
+        BlockedBloomFilter filter = new BlockedBloomFilter(1000, 0.001);
+        assertTrue(filter.put(42L));
+        assertFalse(filter.put(42L));
+        assertTrue(filter.mightContain(42L));
+        byte[] key = "hello".getBytes();
+        filter.put(key, 0, key.length);
+        assertTrue(filter.mightContain("hello"));
+    }
+
+    public void testConcurrentInserts() throws Exception {
+        final int threads = 4;
+        final int perThread = 20000;
+        final BlockedBloomFilter filter = new BlockedBloomFilter(threads * perThread, 0.01);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < perThread; i++) {
+                        filter.put((long) id * perThread + i);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        for(long i = 0; i < threads * perThread; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+
+    public void testSerializationAndMerge() throws Exception {
+        BlockedBloomFilter left = new BlockedBloomFilter(10000, 0.01);
+        BlockedBloomFilter right = new BlockedBloomFilter(10000, 0.01);
+        for(int i = 0; i < 5000; i++) {
+            left.put("left-" + i);
+            right.put("right-" + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        left.writeTo(out);
+        assertEquals(12 + left.bitSize() / 8, out.size());
+        BlockedBloomFilter copy = BlockedBloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(left.hashCount(), copy.hashCount());
+        copy.putAll(right);
+        for(int i = 0; i < 5000; i++) {
+            assertTrue(copy.mightContain("left-" + i));
+            assertTrue(copy.mightContain("right-" + i));
+        }
+        try {
+            copy.putAll(new BlockedBloomFilter(10, 0.5));
+            fail();
+        } catch(IllegalArgumentException e) {
+            //期望的异常
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.sdww8591.utils.algorithm.filter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CuckooFilterTest extends TestCase {
+
+    public void testInsertContainsRemove() {
+        int n = 100000;
+        CuckooFilter filter = new CuckooFilter(n);
+        for(int i = 0; i < n; i++) {
+            assertTrue(filter.put("key-" + i));
+        }
+        assertEquals(n, filter.approximateCount());
+        for(int i = 0; i < n; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        int falsePositives = 0;
+        for(int i = 0; i < n; i++) {
+            if(filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        //理论误判率约为 8 / 65536
+        assertTrue("false positives: " + falsePositives, falsePositives < n * 0.0005);
+
+        for(int i = 0; i < n; i += 2) {
+            assertTrue(filter.remove("key-" + i));
+        }
+        for(int i = 1; i < n; i += 2) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        assertEquals(n / 2, filter.approximateCount());
+    }
+
+    public void testHighLoadFactor() {
+        CuckooFilter filter = new CuckooFilter(1 << 14);
+        long inserted = 0;
+        while(filter.put(inserted)) {
+            inserted++;
+        }
+        assertTrue("load factor " + (double) inserted / filter.capacity(), inserted > filter.capacity() * 0.9);
+        for(long i = 0; i < inserted; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+
+    /**
+     * 多个线程并发插入直至接近满载，同时另一个线程反复查询已确认插入的key，任何时刻都不应出现假阴性
+     */
+    public void testConcurrentInsertsWithoutFalseNegatives() throws Exception {
+        final CuckooFilter filter = new CuckooFilter(1 << 15);
+        final int threads = 4;
+        final int perThread = (int) (filter.capacity() * 0.9 / threads);
+        for(long i = 0; i < 1000; i++) {
+            filter.put(-i - 1);
+        }
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicBoolean missed = new AtomicBoolean();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while(!stop.get()) {
+                    for(long i = 0; i < 1000; i++) {
+                        if(!filter.mightContain(-i - 1)) {
+                            missed.set(true);
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < perThread; i++) {
+                        filter.put((long) id * perThread + i);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        stop.set(true);
+        reader.join();
+        assertFalse(missed.get());
+        for(long i = 0; i < (long) threads * perThread; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+
+    public void testSerialization() throws Exception {
+        CuckooFilter filter = new CuckooFilter(1000);
+        for(int i = 0; i < 1000; i++) {
+            filter.put("key-" + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        out.write(0x7f);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        CuckooFilter copy = CuckooFilter.readFrom(in);
+        assertEquals(0x7f, in.read());
+        assertEquals(filter.approximateCount(), copy.approximateCount());
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(copy.mightContain("key-" + i));
+        }
+    }
+}
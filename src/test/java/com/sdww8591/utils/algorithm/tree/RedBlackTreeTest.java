@@ -0,0 +1,263 @@
+package com.sdww8591.utils.algorithm.tree;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class RedBlackTreeTest extends TestCase {
+
+    public void testRandomOperationsMatchTreeMap() {
+        Random random = new Random(7);
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for(int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            switch(random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.put(key, i), tree.put(key, i));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), tree.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), tree.get(key));
+                    assertEquals(expected.floorKey(key), tree.floorKey(key));
+                    assertEquals(expected.ceilingKey(key), tree.ceilingKey(key));
+                    assertEquals(expected.higherKey(key), tree.higherKey(key));
+                    assertEquals(expected.lowerKey(key), tree.lowerKey(key));
+            }
+            assertEquals(expected.size(), tree.size());
+            if(i % 500 == 0) {
+                checkInvariants(tree);
+                assertEquals(expected, tree);
+            }
+        }
+        checkInvariants(tree);
+        assertEquals(expected, tree);
+        assertEquals(expected.toString(), tree.toString());
+        assertEquals(expected.hashCode(), tree.hashCode());
+    }
+
+    public void testSequentialInsertAndDeleteKeepBalance() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        int count = 1 << 16;
+        for(int i = 0; i < count; i++) {
+            tree.put(i, i);
+        }
+        int blackHeight = checkInvariants(tree);
+        assertTrue(blackHeight <= 17);
+        for(int i = 0; i < count; i += 2) {
+            assertEquals(Integer.valueOf(i), tree.remove(i));
+        }
+        checkInvariants(tree);
+        assertEquals(count / 2, tree.size());
+        assertEquals(Integer.valueOf(1), tree.firstKey());
+        assertEquals(Integer.valueOf(count - 1), tree.lastKey());
+    }
+
+    public void testComparator() {
+        RedBlackTree<String, Integer> tree = new RedBlackTree<>(String.CASE_INSENSITIVE_ORDER);
+        tree.put("b", 1);
+        tree.put("A", 2);
+        tree.put("B", 3);
+        assertEquals(2, tree.size());
+        assertEquals(Integer.valueOf(3), tree.get("b"));
+        assertEquals("A", tree.firstKey());
+        assertTrue(tree.descendingMap().comparator().compare("a", "B") > 0);
+
+        RedBlackTree<Integer, Integer> reversed = new RedBlackTree<>(Collections.<Integer>reverseOrder());
+        for(int i = 0; i < 10; i++) {
+            reversed.put(i, i);
+        }
+        assertEquals(Integer.valueOf(9), reversed.firstKey());
+        assertEquals(Integer.valueOf(4), reversed.higherKey(5));
+    }
+
+    public void testNullKeyRejected() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        try {
+            tree.put(null, 1);
+            fail();
+        } catch(NullPointerException expected) {
+        }
+        tree.put(1, 1);
+        try {
+            tree.get(null);
+            fail();
+        } catch(NullPointerException expected) {
+        }
+    }
+
+    public void testRangeViewsMatchTreeMap() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for(int i = 0; i < 100; i += 3) {
+            tree.put(i, i);
+            expected.put(i, i);
+        }
+        assertViewEquals(expected.subMap(10, true, 50, false), tree.subMap(10, true, 50, false));
+        assertViewEquals(expected.subMap(9, false, 51, true), tree.subMap(9, false, 51, true));
+        assertViewEquals(expected.headMap(30, true), tree.headMap(30, true));
+        assertViewEquals(expected.tailMap(30, false), tree.tailMap(30, false));
+        assertViewEquals(expected.descendingMap(), tree.descendingMap());
+        assertViewEquals(expected.descendingMap().headMap(40, false), tree.descendingMap().headMap(40, false));
+        assertViewEquals(expected.descendingMap().subMap(80, true, 20, true),
+                tree.descendingMap().subMap(80, true, 20, true));
+        assertViewEquals(expected.subMap(10, true, 90, false).descendingMap().tailMap(50, true),
+                tree.subMap(10, true, 90, false).descendingMap().tailMap(50, true));
+        assertEquals(expected.descendingKeySet().toString(), tree.descendingKeySet().toString());
+        assertEquals(expected.navigableKeySet().subSet(5, 20).toString(), tree.navigableKeySet().subSet(5, 20).toString());
+
+        try {
+            tree.subMap(50, 10);
+            fail();
+        } catch(IllegalArgumentException ignored) {
+        }
+        try {
+            tree.headMap(30).put(40, 40);
+            fail();
+        } catch(IllegalArgumentException ignored) {
+        }
+        try {
+            tree.subMap(10, 50).subMap(0, 20);
+            fail();
+        } catch(IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testViewsWriteThrough() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        for(int i = 0; i < 20; i++) {
+            tree.put(i, i);
+        }
+        NavigableMap<Integer, Integer> sub = tree.subMap(5, true, 10, true);
+        sub.put(7, 70);
+        assertEquals(Integer.valueOf(70), tree.get(7));
+        assertEquals(Integer.valueOf(5), sub.pollFirstEntry().getKey());
+        assertEquals(Integer.valueOf(10), sub.descendingMap().pollFirstEntry().getKey());
+        assertFalse(tree.containsKey(5));
+        assertFalse(tree.containsKey(10));
+        sub.clear();
+        assertEquals(14, tree.size());
+        assertNull(tree.get(7));
+        assertTrue(sub.isEmpty());
+        tree.put(6, 6);
+        assertEquals(1, sub.size());
+        checkInvariants(tree);
+    }
+
+    public void testIteratorRemoveKeepsEntriesValid() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        for(int i = 0; i < 1000; i++) {
+            tree.put(i, i);
+        }
+        Map.Entry<Integer, Integer> kept = null;
+        for(Iterator<Map.Entry<Integer, Integer>> it = tree.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            if(entry.getKey() % 3 != 0) {
+                it.remove();
+            } else if(entry.getKey() == 999) {
+                kept = entry;
+            }
+            //覆盖已有的key会改变树的结构，但不影响正在进行的迭代
+            tree.put(0, -1);
+        }
+        assertEquals(334, tree.size());
+        checkInvariants(tree);
+        int expected = 0;
+        for(Integer key : tree.keySet()) {
+            assertEquals(expected, key.intValue());
+            expected += 3;
+        }
+        kept.setValue(-999);
+        assertEquals(Integer.valueOf(-999), tree.get(999));
+
+        Iterator<Integer> descending = tree.descendingKeySet().iterator();
+        while(descending.hasNext()) {
+            if(descending.next() > 100) {
+                descending.remove();
+            }
+        }
+        assertEquals(Integer.valueOf(99), tree.lastKey());
+        checkInvariants(tree);
+    }
+
+    public void testIteratorFailFast() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        for(int i = 0; i < 10; i++) {
+            tree.put(i, i);
+        }
+        Iterator<Integer> it = tree.keySet().iterator();
+        it.next();
+        tree.put(100, 100);
+        try {
+            it.next();
+            fail();
+        } catch(ConcurrentModificationException expected) {
+        }
+    }
+
+    public void testNavigationEntriesAreSnapshots() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<>();
+        tree.put(1, 1);
+        try {
+            tree.firstEntry().setValue(2);
+            fail();
+        } catch(UnsupportedOperationException expected) {
+        }
+        assertEquals(Integer.valueOf(1), tree.pollLastEntry().getValue());
+        assertNull(tree.pollFirstEntry());
+        assertTrue(tree.isEmpty());
+    }
+
+    private static void assertViewEquals(NavigableMap<Integer, Integer> expected, NavigableMap<Integer, Integer> actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.firstKey(), actual.firstKey());
+        assertEquals(expected.lastKey(), actual.lastKey());
+        for(int key = -5; key < 105; key++) {
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals(expected.floorKey(key), actual.floorKey(key));
+            assertEquals(expected.ceilingKey(key), actual.ceilingKey(key));
+            assertEquals(expected.higherKey(key), actual.higherKey(key));
+            assertEquals(expected.lowerKey(key), actual.lowerKey(key));
+        }
+        assertEquals(expected.descendingMap().toString(), actual.descendingMap().toString());
+    }
+
+    /**
+     * @return 黑色高度
+     */
+    private static <K extends Comparable<K>, V> int checkInvariants(RedBlackTree<K, V> tree) {
+        RedBlackTree.Node<K, V> root = tree.root();
+        assertTrue(root == null || !root.red);
+        int[] count = new int[1];
+        int blackHeight = check(root, null, null, count);
+        assertEquals(tree.size(), count[0]);
+        return blackHeight;
+    }
+
+    private static <K extends Comparable<K>, V> int check(RedBlackTree.Node<K, V> node, K min, K max, int[] count) {
+        if(node == null) {
+            return 1;
+        }
+        count[0]++;
+        assertTrue(min == null || min.compareTo(node.key) < 0);
+        assertTrue(max == null || max.compareTo(node.key) > 0);
+        if(node.red) {
+            assertFalse(node.left != null && node.left.red);
+            assertFalse(node.right != null && node.right.red);
+        }
+        int left = check(node.left, min, node.key, count);
+        int right = check(node.right, node.key, max, count);
+        assertEquals(left, right);
+        return left + (node.red ? 0 : 1);
+    }
+}
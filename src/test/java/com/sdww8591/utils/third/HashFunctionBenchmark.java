@@ -0,0 +1,59 @@
+package com.sdww8591.utils.third;
+
+import java.util.Random;
+
+/**
+ * 各HashFunction在不同key长度下的吞吐，直接运行main即可：
+ * 每个组合先预热再计时，输出 ns/op 与 GB/s。结果仅供在同一台机器上横向比较。
+ */
+public class HashFunctionBenchmark {
+
+    private static final int[] LENGTHS = {8, 16, 32, 64, 128, 256, 1024};
+
+    private static final int KEYS = 1024;
+
+    public static void main(String[] args) {
+        HashFunction[] functions = {HashFunctions.murmur64A(), HashFunctions.murmur3(0),
+                HashFunctions.xxHash64(0), HashFunctions.wyHash(0)};
+        Random random = new Random(1);
+        long blackhole = 0;
+        System.out.println(String.format("%-24s%8s%12s%10s", "function", "length", "ns/op", "GB/s"));
+        for(int length : LENGTHS) {
+            byte[] data = new byte[KEYS * length];
+            random.nextBytes(data);
+            long iterations = Math.max(1 << 20, (1L << 28) / length);
+            for(HashFunction function : functions) {
+                blackhole += run(function, data, length, iterations / 4);
+                long start = System.nanoTime();
+                blackhole += run(function, data, length, iterations);
+                double nanos = (double) (System.nanoTime() - start) / iterations;
+                System.out.println(String.format("%-24s%8d%12.2f%10.2f", function, length, nanos, length / nanos));
+            }
+        }
+
+        String[] keys = new String[KEYS];
+        for(int i = 0; i < KEYS; i++) {
+            keys[i] = "user:" + random.nextInt(100000000);
+        }
+        for(HashFunction function : functions) {
+            for(int i = 0; i < 1 << 22; i++) {
+                blackhole += function.hash(keys[i & (KEYS - 1)]);
+            }
+            int iterations = 1 << 24;
+            long start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                blackhole += function.hash(keys[i & (KEYS - 1)]);
+            }
+            System.out.println(String.format("%-24s%8s%12.2f", function, "String", (double) (System.nanoTime() - start) / iterations));
+        }
+        System.out.println("blackhole: " + blackhole);
+    }
+
+    private static long run(HashFunction function, byte[] data, int length, long iterations) {
+        long sum = 0;
+        for(long i = 0; i < iterations; i++) {
+            sum += function.hash(data, (int) (i & (KEYS - 1)) * length, length);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,182 @@
+package com.sdww8591.utils.third;
+
+import com.sdww8591.utils.algorithm.consistentHash.ConsistentHash;
+import com.sdww8591.utils.algorithm.consistentHash.HashPlacement;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * hash函数的统计质量：
+ * <ul>
+ *     <li>雪崩：翻转任意一个输入bit，每个输出bit翻转的概率都接近1/2</li>
+ *     <li>bit独立性：翻转一个输入bit时，任意两个输出bit的翻转互不相关</li>
+ *     <li>分桶：典型的路由key（递增ID、带前缀的字符串）按高位和低位分桶，卡方值在期望范围内</li>
+ *     <li>环上分布：作为ConsistentHash的key hash时各节点的负载接近均匀</li>
+ * </ul>
+ * 所有随机数都使用固定种子，结果可重复。
+ */
+public class HashFunctionQualityTest extends TestCase {
+
+    private static final HashFunction[] FUNCTIONS = {HashFunctions.murmur64A(), HashFunctions.murmur3(0),
+            HashFunctions.xxHash64(0), HashFunctions.wyHash(0)};
+
+    private static final int BUCKETS = 1024;
+
+    public void testAvalanche() {
+        for(HashFunction function : FUNCTIONS) {
+            for(int length : new int[]{4, 8, 16, 40}) {
+                double bias = maxAvalancheBias(function, length, 2000);
+                assertTrue(function + " length " + length + " bias " + bias, bias < 0.07);
+            }
+        }
+    }
+
+    /**
+     * @return 所有 (输入bit, 输出bit) 组合中，翻转概率与0.5之差的最大值
+     */
+    private static double maxAvalancheBias(HashFunction function, int length, int samples) {
+        Random random = new Random(length);
+        int bits = length * 8;
+        int[][] flips = new int[bits][64];
+        byte[] key = new byte[length];
+        for(int s = 0; s < samples; s++) {
+            random.nextBytes(key);
+            long base = function.hash(key, 0, length);
+            for(int bit = 0; bit < bits; bit++) {
+                key[bit >>> 3] ^= 1 << (bit & 7);
+                long diff = base ^ function.hash(key, 0, length);
+                key[bit >>> 3] ^= 1 << (bit & 7);
+                for(int out = 0; out < 64; out++) {
+                    flips[bit][out] += (int) ((diff >>> out) & 1);
+                }
+            }
+        }
+        double max = 0;
+        for(int bit = 0; bit < bits; bit++) {
+            for(int out = 0; out < 64; out++) {
+                max = Math.max(max, Math.abs((double) flips[bit][out] / samples - 0.5));
+            }
+        }
+        return max;
+    }
+
+    public void testBitIndependence() {
+        int length = 16;
+        int samples = 2000;
+        for(HashFunction function : FUNCTIONS) {
+            Random random = new Random(5);
+            byte[] key = new byte[length];
+            double worst = 0;
+            //只抽查部分输入bit，全部输入bit与输出bit对的组合太多
+            for(int bit = 0; bit < length * 8; bit += 9) {
+                long[] diffs = new long[samples];
+                for(int s = 0; s < samples; s++) {
+                    random.nextBytes(key);
+                    long base = function.hash(key, 0, length);
+                    key[bit >>> 3] ^= 1 << (bit & 7);
+                    diffs[s] = base ^ function.hash(key, 0, length);
+                }
+                worst = Math.max(worst, maxPairCorrelation(diffs));
+            }
+            assertTrue(function + " correlation " + worst, worst < 0.12);
+        }
+    }
+
+    /**
+     * @return 任意两个输出bit翻转指示变量之间相关系数绝对值的最大值
+     */
+    private static double maxPairCorrelation(long[] diffs) {
+        int n = diffs.length;
+        int[] ones = new int[64];
+        for(long diff : diffs) {
+            for(int j = 0; j < 64; j++) {
+                ones[j] += (int) ((diff >>> j) & 1);
+            }
+        }
+        double worst = 0;
+        for(int j = 0; j < 64; j++) {
+            for(int k = j + 1; k < 64; k++) {
+                int both = 0;
+                for(long diff : diffs) {
+                    both += (int) ((diff >>> j) & (diff >>> k) & 1);
+                }
+                double pj = (double) ones[j] / n;
+                double pk = (double) ones[k] / n;
+                double covariance = (double) both / n - pj * pk;
+                double deviation = Math.sqrt(pj * (1 - pj) * pk * (1 - pk));
+                if(deviation > 0) {
+                    worst = Math.max(worst, Math.abs(covariance / deviation));
+                }
+            }
+        }
+        return worst;
+    }
+
+    public void testChiSquareOnRoutingKeys() {
+        int count = 200000;
+        for(HashFunction function : FUNCTIONS) {
+            int[] high = new int[BUCKETS];
+            int[] low = new int[BUCKETS];
+            for(int i = 0; i < count; i++) {
+                addToBuckets(function.hash("user:" + i), high, low);
+            }
+            assertChiSquare(function + " string keys", high, count);
+            assertChiSquare(function + " string keys", low, count);
+
+            high = new int[BUCKETS];
+            low = new int[BUCKETS];
+            for(int i = 0; i < count; i++) {
+                addToBuckets(function.hash((long) i), high, low);
+            }
+            assertChiSquare(function + " sequential ids", high, count);
+            assertChiSquare(function + " sequential ids", low, count);
+        }
+    }
+
+    private static void addToBuckets(long hash, int[] high, int[] low) {
+        //hash环按高位排序，取模分片使用低位，两者都需要均匀
+        high[(int) (hash >>> 54)]++;
+        low[(int) (hash & (BUCKETS - 1))]++;
+    }
+
+    /**
+     * 自由度为BUCKETS - 1的卡方分布均值为1023，标准差约为45，超过均值6个标准差即认为分布不均匀
+     */
+    private static void assertChiSquare(String message, int[] buckets, int count) {
+        double expected = (double) count / buckets.length;
+        double chiSquare = 0;
+        for(int bucket : buckets) {
+            chiSquare += (bucket - expected) * (bucket - expected) / expected;
+        }
+        double limit = (buckets.length - 1) + 6 * Math.sqrt(2.0 * (buckets.length - 1));
+        assertTrue(message + " chi-square " + chiSquare, chiSquare < limit);
+    }
+
+    public void testRingSpread() {
+        List<String> nodes = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            nodes.add("10.0.0." + i + ":6379");
+        }
+        int count = 100000;
+        for(HashFunction function : FUNCTIONS) {
+            ConsistentHash<String> ring = new ConsistentHash<>(160, nodes, new HashPlacement<String>(), function);
+            Map<String, Integer> loads = new HashMap<>();
+            for(int i = 0; i < count; i++) {
+                String shard = ring.getShard("order:" + i);
+                Integer load = loads.get(shard);
+                loads.put(shard, load == null ? 1 : load + 1);
+            }
+            double mean = (double) count / nodes.size();
+            for(String node : nodes) {
+                Integer load = loads.get(node);
+                assertNotNull(function + " " + node, load);
+                assertTrue(function + " " + node + " load " + load, Math.abs(load - mean) < mean * 0.3);
+            }
+        }
+    }
+}
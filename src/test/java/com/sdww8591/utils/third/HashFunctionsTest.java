@@ -0,0 +1,100 @@
+package com.sdww8591.utils.third;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 各实现与参考实现的结果逐位一致，并且String/long/ByteBuffer重载与对应字节上的计算结果一致
+ */
+public class HashFunctionsTest extends TestCase {
+
+    private static final String[] KEYS = {"", "a", "abc", "message digest", "abcdefghijklmnopqrstuvwxyz",
+            "The quick brown fox jumps over the lazy dog, repeatedly and at length."};
+
+    /**
+     * 参考实现XXH64，seed为0
+     */
+    public void testXxHash64Vectors() throws Exception {
+        long[] expected = {0xef46db3751d8e999L, 0xd24ec4f1a98c6e5bL, 0x44bc2cf5ad770999L, 0x066ed728fceeb3beL,
+                0xcfe1f278fa89835cL, 0x397cfa5f843dbc63L};
+        for(int i = 0; i < KEYS.length; i++) {
+            assertEquals(KEYS[i], expected[i], HashFunctions.xxHash64(0).hash(KEYS[i]));
+        }
+        byte[] key = KEYS[5].getBytes("UTF-8");
+        assertEquals(0x78bb7ddc9eb8dd10L, XxHash64.hash(key, 0, key.length, 0x1234ABCDL));
+    }
+
+    /**
+     * wyhash final4测试向量：wyhash(KEYS[i], len, i, _wyp)
+     */
+    public void testWyHashVectors() throws Exception {
+        long[] expected = {0x0409638ee2bde459L, 0xa8412d091b5fe0a9L, 0x32dd92e4b2915153L, 0x8619124089a3a16bL,
+                0x7a43afb61d7f5f40L};
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(KEYS[i], expected[i], HashFunctions.wyHash(i).hash(KEYS[i]));
+        }
+    }
+
+    public void testMurmur64AMatchesMurmurHash() throws Exception {
+        HashFunction murmur = HashFunctions.murmur64A();
+        for(String key : KEYS) {
+            assertEquals(key, MurmurHash.hash(key), murmur.hash(key));
+            byte[] bytes = key.getBytes("UTF-8");
+            assertEquals(key, MurmurHash.hash(bytes), murmur.hash(bytes, 0, bytes.length));
+        }
+        assertEquals(MurmurHash.hash(42L), murmur.hash(42L));
+        assertSame(murmur, HashFunctions.murmur64A(0x1234ABCD));
+    }
+
+    public void testMurmur3MatchesHash128() {
+        byte[] key = KEYS[5].getBytes();
+        long[] out = new long[2];
+        MurmurHash3.hash128(key, 0, key.length, 7, out);
+        assertEquals(out[0], HashFunctions.murmur3(7).hash(key, 0, key.length));
+    }
+
+    public void testOverloadsMatchBytes() throws Exception {
+        HashFunction[] functions = {HashFunctions.murmur64A(), HashFunctions.murmur64A(99), HashFunctions.murmur3(99),
+                HashFunctions.xxHash64(99), HashFunctions.wyHash(99)};
+        Random random = new Random(31);
+        char[] alphabet = {'a', 'Z', '0', '\u00e9', '\u07ff', '\u0800', '\u4e00', '\uffff', '\ud83d', '\ude00'};
+        for(HashFunction function : functions) {
+            for(int i = 0; i < 2000; i++) {
+                char[] chars = new char[random.nextInt(80)];
+                for(int j = 0; j < chars.length; j++) {
+                    chars[j] = alphabet[random.nextInt(alphabet.length)];
+                }
+                String key = new String(chars);
+                byte[] bytes = key.getBytes("UTF-8");
+                long expected = function.hash(bytes, 0, bytes.length);
+                assertEquals(function + " " + key, expected, function.hash(key));
+
+                byte[] padded = new byte[bytes.length + 6];
+                System.arraycopy(bytes, 0, padded, 3, bytes.length);
+                assertEquals(expected, function.hash(padded, 3, bytes.length));
+                assertEquals(expected, function.hash(ByteBuffer.wrap(padded, 3, bytes.length).slice()));
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                direct.put(bytes).flip();
+                assertEquals(expected, function.hash(direct));
+                assertEquals(0, direct.position());
+            }
+            for(int i = 0; i < 100; i++) {
+                long key = random.nextLong();
+                byte[] bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(key).array();
+                assertEquals(function.toString(), function.hash(bytes, 0, 8), function.hash(key));
+            }
+        }
+    }
+
+    public void testSeedChangesResult() {
+        byte[] key = Arrays.copyOf(KEYS[4].getBytes(), 26);
+        assertFalse(HashFunctions.xxHash64(1).hash(key, 0, 26) == HashFunctions.xxHash64(2).hash(key, 0, 26));
+        assertFalse(HashFunctions.wyHash(1).hash(key, 0, 26) == HashFunctions.wyHash(2).hash(key, 0, 26));
+        assertFalse(HashFunctions.murmur3(1).hash(key, 0, 26) == HashFunctions.murmur3(2).hash(key, 0, 26));
+        assertFalse(HashFunctions.murmur64A(1).hash(key, 0, 26) == HashFunctions.murmur64A(2).hash(key, 0, 26));
+    }
+}
@@ -0,0 +1,130 @@
+package com.sdww8591.utils.third;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 各个重载的结果必须与hash(byte[])逐位一致，否则已有的hash环会发生漂移
+ */
+public class MurmurHashTest extends TestCase {
+
+    /**
+     * 重写之前的实现（ByteBuffer.wrap版本）对UTF-8字节的计算结果
+     */
+    public void testMatchesOriginalImplementation() throws Exception {
+        String[] keys = {"", "a", "key", "consistent-hash", "0123456789abcdef",
+                "the quick brown fox jumps over the lazy dog", "\u4e00\u81f4\u6027hash"};
+        long[] expected = {0x742d0865aa627b0bL, 0x6ee2d45a1217e2fdL, 0x55d6bac287d73573L, 0xe4df92ef5d8623deL,
+                0xc6caf01bb1b384abL, 0x7195a9b2a09b3fefL, 0x22602f09dfaf540cL};
+        for(int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], expected[i], MurmurHash.hash(keys[i].getBytes("UTF-8")));
+        }
+    }
+
+    public void testStringHashMatchesEncodedBytes() throws Exception {
+        Random random = new Random(17);
+        char[] alphabet = {'a', 'Z', '0', '\u00e9', '\u07ff', '\u0800', '\u4e00', '\uffff',
+                '\ud83d', '\ude00', '\udbff', '\udfff'};
+        for(int i = 0; i < 5000; i++) {
+            char[] chars = new char[random.nextInt(40)];
+            for(int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String key = new String(chars);
+            assertEquals(key, MurmurHash.hash(key.getBytes("UTF-8")), MurmurHash.hash(key));
+            ByteBuffer utf16 = ByteBuffer.allocate(chars.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+            utf16.asCharBuffer().put(chars);
+            assertEquals(key, MurmurHash.hash(utf16.array()), MurmurHash.hashUtf16(key));
+        }
+    }
+
+    public void testOverloadsMatchArrayHash() {
+        Random random = new Random(7);
+        for(int length = 0; length < 64; length++) {
+            byte[] data = new byte[length + 10];
+            random.nextBytes(data);
+            byte[] slice = Arrays.copyOfRange(data, 3, 3 + length);
+            long expected = MurmurHash.hash(slice);
+
+            assertEquals(expected, MurmurHash.hash(data, 3, length));
+
+            ByteBuffer heap = ByteBuffer.wrap(data, 3, length).slice();
+            assertEquals(expected, MurmurHash.hash(heap));
+            assertEquals(0, heap.position());
+
+            for(ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                ByteBuffer direct = ByteBuffer.allocateDirect(data.length).order(order);
+                direct.put(data).position(3).limit(3 + length);
+                assertEquals(expected, MurmurHash.hash(direct));
+                assertEquals(3, direct.position());
+                assertEquals(order, direct.order());
+            }
+        }
+    }
+
+    public void testLongKeyMatchesLittleEndianBytes() {
+        Random random = new Random(11);
+        for(int i = 0; i < 1000; i++) {
+            long key = random.nextLong();
+            byte[] bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(key).array();
+            assertEquals(MurmurHash.hash(bytes), MurmurHash.hash(key));
+        }
+    }
+
+    public void testIncrementalHashMatchesOneShot() throws Exception {
+        Random random = new Random(13);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        for(int length : new int[]{0, 1, 7, 8, 9, 63, 1000}) {
+            long expected = MurmurHash.hash(data, 0, length);
+            for(int chunk = 1; chunk <= 17; chunk++) {
+                MurmurHasher arrayHasher = new MurmurHasher(length);
+                MurmurHasher bufferHasher = new MurmurHasher(length);
+                for(int offset = 0; offset < length; offset += chunk) {
+                    int size = Math.min(chunk, length - offset);
+                    arrayHasher.update(data, offset, size);
+                    ByteBuffer direct = ByteBuffer.allocateDirect(size).order(ByteOrder.BIG_ENDIAN);
+                    direct.put(data, offset, size).flip();
+                    bufferHasher.update(direct);
+                    assertFalse(direct.hasRemaining());
+                    assertEquals(ByteOrder.BIG_ENDIAN, direct.order());
+                }
+                assertEquals(expected, arrayHasher.finish());
+                assertEquals(expected, bufferHasher.finish());
+            }
+        }
+
+        File file = File.createTempFile("murmur", ".bin");
+        try {
+            try(FileOutputStream out = new FileOutputStream(file)) {
+                out.write(data);
+            }
+            try(FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                assertEquals(MurmurHash.hash(data), MurmurHasher.hash(channel));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testIncrementalHashRejectsWrongLength() {
+        try {
+            new MurmurHasher(4).update(new byte[3]).finish();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            new MurmurHasher(4).update(new byte[5]);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}